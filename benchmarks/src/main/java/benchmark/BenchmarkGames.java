@@ -0,0 +1,126 @@
+package benchmark;
+
+import agent.Snake;
+import item.Item;
+import model.InputMap;
+import model.LayoutGenerator;
+import model.SnakeGame;
+import strategy.Strategy;
+import strategy.StrategyAdvanced;
+import utils.AgentAction;
+import utils.ItemType;
+
+
+// Games prepared for the benchmarks, outside of the measured code
+final class BenchmarkGames {
+
+	private static final int MAX_TURN = 1000;
+
+	private BenchmarkGames() {
+	}
+
+
+	/**
+	 * Layout file, or genN for a generated NxN layout (5% of walls, one snake)
+	 */
+	static InputMap loadLayout(String layoutName) throws Exception {
+
+		if(layoutName.startsWith("gen")) {
+			int size = Integer.parseInt(layoutName.substring(3));
+			return new LayoutGenerator(size, size, 0.05, 1, 42).generateMap();
+		}
+		return new InputMap(layoutName);
+	}
+
+
+	/**
+	 * Builds a game whose first snake has been grown to the given length.
+	 * The first apple comes from the layout and the snake always takes the first safe move,
+	 * so the prepared game is the same at every call.
+	 */
+	static SnakeGame prepareGame(InputMap inputMap, int length) {
+
+		SnakeGame snakeGame = new SnakeGame(MAX_TURN, inputMap, false);
+		snakeGame.setStrategies(advancedStrategies(inputMap));
+		snakeGame.init();
+		snakeGame.setTime(0);
+
+		Snake snake = snakeGame.getSnakes().get(0);
+		StrategyAdvanced safety = new StrategyAdvanced();
+
+		while(snake.getSize() < length) {
+
+			AgentAction safeAction = null;
+			for(AgentAction action : AgentAction.values()) {
+				if(snakeGame.isLegalMove(snake, action) && !safety.isLetalMove(snake, snakeGame, action)) {
+					safeAction = action;
+					break;
+				}
+			}
+
+			// The snake trapped itself, the benchmark runs with the length reached
+			if(safeAction == null) {
+				break;
+			}
+
+			snake.move(safeAction, snakeGame);
+			snake.sizeIncrease();
+		}
+
+		return snakeGame;
+	}
+
+
+	/**
+	 * New game with a random first apple drawn from the seed
+	 */
+	static SnakeGame createGame(InputMap inputMap, long seed) {
+
+		SnakeGame snakeGame = new SnakeGame(MAX_TURN, inputMap, true);
+		snakeGame.setSeed(seed);
+		snakeGame.setStrategies(advancedStrategies(inputMap));
+		snakeGame.init();
+		snakeGame.setTime(0);
+
+		return snakeGame;
+	}
+
+
+	/**
+	 * Moves the apple to the first free cell half a board away from the head
+	 */
+	static SnakeGame oppositeApple(SnakeGame snakeGame) {
+
+		int sizeX = snakeGame.getSizeX();
+		int sizeY = snakeGame.getSizeY();
+		Snake snake = snakeGame.getSnakes().get(0);
+
+		for(Item item : snakeGame.getItems()) {
+			if(item.getItemType() != ItemType.APPLE) {
+				continue;
+			}
+			for(int d = 0; d < sizeX * sizeY; d++) {
+				int x = (snake.getX() + sizeX / 2 + d / sizeY) % sizeX;
+				int y = (snake.getY() + sizeY / 2 + d) % sizeY;
+				if(!snakeGame.getWalls()[x][y]) {
+					item.setX(x);
+					item.setY(y);
+					break;
+				}
+			}
+		}
+
+		return snakeGame;
+	}
+
+
+	private static Strategy[] advancedStrategies(InputMap inputMap) {
+
+		Strategy[] strats = new Strategy[inputMap.getStart_snakes().size()];
+		for(int j = 0; j < strats.length; j++) {
+			strats[j] = new StrategyAdvanced();
+		}
+		return strats;
+	}
+
+}
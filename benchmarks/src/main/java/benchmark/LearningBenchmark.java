@@ -0,0 +1,146 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.InputMap;
+import model.SnakeGame;
+import strategy.ApproximateQLearning_solo;
+import strategy.NeuralQLearning_solo;
+import strategy.Policy;
+import strategy.TabularQLearning_solo;
+import utils.AgentAction;
+import utils.LocalView;
+import utils.ReachableArea;
+
+
+// Encoding, decision and update of the learners on a fixed state, with the same parameters as
+// SimulationBenchmark. The state and the next state are prepared once per trial: none of these
+// benchmarks changes them.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class LearningBenchmark {
+
+	@Param({"layouts/alone/small_alone.lay", "layouts/duel/arena.lay", "gen100"})
+	public String layout;
+
+	@Param({"1", "8", "32"})
+	public int length;
+
+	private SnakeGame state;
+	private SnakeGame nextState;
+
+	private TabularQLearning_solo tabular;
+	private Policy tabularPolicy;
+	private TabularQLearning_solo localTabular;
+
+	private LocalView view;
+	private double[] viewBuffer;
+
+	private ReachableArea reachableArea;
+	private int reachableLimit;
+
+	private ApproximateQLearning_solo approximate;
+
+	private NeuralQLearning_solo neural;
+	private Policy neuralPolicy;
+	private double[] neuralInput;
+
+
+	@Setup(Level.Trial)
+	public void prepare() throws Exception {
+
+		InputMap inputMap = BenchmarkGames.loadLayout(layout);
+		state = BenchmarkGames.prepareGame(inputMap, length);
+		nextState = BenchmarkGames.prepareGame(inputMap, length);
+		nextState.takeTurn();
+
+		int nbActions = AgentAction.values().length;
+
+		tabular = new TabularQLearning_solo(nbActions, 0.3, 0.95, 0.01);
+		tabularPolicy = tabular.newPolicy(true);
+		localTabular = new TabularQLearning_solo(nbActions, 0.3, 0.95, 0.01);
+		localTabular.setViewRadius(2);
+
+		view = new LocalView();
+		viewBuffer = new double[LocalView.size(3)];
+
+		reachableArea = new ReachableArea(true);
+		reachableLimit = state.getSnakes().get(0).getSize() + 1;
+
+		approximate = new ApproximateQLearning_solo(nbActions, 0.3, 0.95, 0.01);
+
+		neural = new NeuralQLearning_solo(nbActions, 0, 0.95, 0.01, new int[] {64, 64}, 32, 1);
+		neuralPolicy = neural.newPolicy(false);
+		neuralInput = new double[neural.getNetwork().getInputSize()];
+	}
+
+
+	@Benchmark
+	public String tabularEncodeState() {
+		return tabular.encodeState(0, state);
+	}
+
+	@Benchmark
+	public String tabularEncodeStateViewRadius2() {
+		return localTabular.encodeState(0, state);
+	}
+
+	@Benchmark
+	public AgentAction tabularChooseAction() {
+		return tabularPolicy.chooseAction(0, state);
+	}
+
+	@Benchmark
+	public void tabularUpdate() {
+		tabularPolicy.update(0, state, AgentAction.MOVE_DOWN, nextState, 1, false);
+	}
+
+	@Benchmark
+	public double[] localViewSyncAndEncode() {
+		view.sync(state);
+		view.encode(0, 3, viewBuffer, 0);
+		return viewBuffer;
+	}
+
+	@Benchmark
+	public void reachableAreaCountAllActions(Blackhole blackhole) {
+		for(AgentAction action : AgentAction.values()) {
+			blackhole.consume(reachableArea.count(state, 0, action, reachableLimit));
+		}
+	}
+
+	@Benchmark
+	public double[] approximateGetFeatures() {
+		return approximate.getFeatures(0, state, AgentAction.MOVE_DOWN);
+	}
+
+	@Benchmark
+	public double[] neuralEncode() {
+		neural.encode(0, state, neuralInput, 0);
+		return neuralInput;
+	}
+
+	@Benchmark
+	public AgentAction neuralChooseAction() {
+		return neuralPolicy.chooseAction(0, state);
+	}
+
+}
@@ -0,0 +1,86 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import agent.Snake;
+import model.InputMap;
+import model.LayoutGenerator;
+import model.SnakeGame;
+import strategy.StrategyAdvanced;
+import strategy.StrategyPathfinding;
+import utils.AgentAction;
+
+
+// Decision latency of StrategyPathfinding on generated boards, against the one-step check of StrategyAdvanced.
+// "random apple" draws the apple position from a new seed at each invocation, "opposite apple" puts it
+// half a board away from the head (nearly the whole board is searched).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class PathfindingBenchmark {
+
+	@Param({"10", "50", "100", "250", "500", "1000"})
+	public int size;
+
+	@Param({"0.05"})
+	public double density;
+
+	private InputMap inputMap;
+	private long gameSeed = 42;
+
+	private final StrategyPathfinding pathfinding = new StrategyPathfinding();
+	private final StrategyAdvanced advanced = new StrategyAdvanced();
+
+	private SnakeGame randomApple;
+	private SnakeGame oppositeApple;
+
+
+	@Setup(Level.Trial)
+	public void generateLayout() throws Exception {
+		inputMap = new LayoutGenerator(size, size, density, 1, 42).generateMap();
+	}
+
+	// A new game, with its apple drawn from a new seed, before each decision
+	@Setup(Level.Invocation)
+	public void createGames() {
+		randomApple = BenchmarkGames.createGame(inputMap, gameSeed++);
+		oppositeApple = BenchmarkGames.oppositeApple(BenchmarkGames.createGame(inputMap, gameSeed++));
+	}
+
+
+	@Benchmark
+	public void advancedIsLetalMoveAllActions(Blackhole blackhole) {
+		Snake snake = randomApple.getSnakes().get(0);
+		for(AgentAction action : AgentAction.values()) {
+			blackhole.consume(advanced.isLetalMove(snake, randomApple, action));
+		}
+	}
+
+	@Benchmark
+	public AgentAction pathfindingRandomApple() {
+		return pathfinding.chooseAction(0, randomApple);
+	}
+
+	@Benchmark
+	public AgentAction pathfindingOppositeApple() {
+		return pathfinding.chooseAction(0, oppositeApple);
+	}
+
+}
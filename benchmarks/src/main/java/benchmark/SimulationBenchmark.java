@@ -0,0 +1,116 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.GameSnapshot;
+import model.InputMap;
+import model.SnakeGame;
+import utils.AgentAction;
+
+
+// Turn of the game and its parts, parameterized by layout (file, or genN for a generated NxN board) and
+// by the length of the first snake.
+// The benchmarks that move the game forward run a fixed number of operations on a game prepared again,
+// untimed, before each invocation, so that every invocation starts from the same state.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class SimulationBenchmark {
+
+	private static final int TURNS = 50;
+	private static final int MOVES = 1000;
+
+
+	// Game of the layout with its first snake grown to the length, built once per trial
+	@State(Scope.Thread)
+	public static class Prepared {
+
+		@Param({"layouts/alone/small_alone.lay", "layouts/duel/arena.lay", "gen100"})
+		public String layout;
+
+		@Param({"1", "8", "32"})
+		public int length;
+
+		InputMap inputMap;
+		SnakeGame game;
+		AgentAction[] actions;
+		final GameSnapshot snapshot = new GameSnapshot();
+
+		@Setup(Level.Trial)
+		public void prepare() throws Exception {
+			inputMap = BenchmarkGames.loadLayout(layout);
+			game = BenchmarkGames.prepareGame(inputMap, length);
+			actions = new AgentAction[inputMap.getStart_snakes().size()];
+			Arrays.fill(actions, AgentAction.MOVE_DOWN);
+		}
+	}
+
+	// The same game built again before each invocation, for the benchmarks that move it forward
+	@State(Scope.Thread)
+	public static class Fresh extends Prepared {
+
+		@Setup(Level.Invocation)
+		public void reset() {
+			game = BenchmarkGames.prepareGame(inputMap, length);
+		}
+	}
+
+
+	@Benchmark
+	@OperationsPerInvocation(TURNS)
+	public void takeTurn(Fresh state) {
+		for(int i = 0; i < TURNS; i++) {
+			state.game.takeTurn();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TURNS)
+	public void simulateStep(Fresh state) {
+		for(int i = 0; i < TURNS; i++) {
+			state.game.simulateStep(state.actions);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MOVES)
+	public void snakeMove(Fresh state) {
+		for(int i = 0; i < MOVES; i++) {
+			state.game.getSnakes().get(0).move(AgentAction.MOVE_RIGHT, state.game);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MOVES)
+	public void checkSnakeEaten(Fresh state) {
+		for(int i = 0; i < MOVES; i++) {
+			state.game.checkSnakeEaten();
+		}
+	}
+
+	@Benchmark
+	public void saveAndRestoreState(Prepared state, Blackhole blackhole) {
+		state.game.saveState(state.snapshot);
+		state.game.restoreState(state.snapshot);
+		blackhole.consume(state.game);
+	}
+
+}
@@ -3,7 +3,9 @@ package agent;
 import java.io.Serializable;
 import java.util.ArrayList;
 
+import metrics.Metrics;
 import model.SnakeGame;
+import strategy.Policy;
 import strategy.Strategy;
 import utils.AgentAction;
 import utils.ColorSnake;
@@ -13,6 +15,8 @@ import utils.Position;
 // Class representing a Snake agent in the game
 public class Snake implements Serializable{
 
+	private static final long serialVersionUID = 1L;
+
 	// List of positions occupied by the snake (head is first)
 	ArrayList<Position> positions;
 
@@ -23,8 +27,8 @@ public class Snake implements Serializable{
 	private int invincibleTimer;
 	private int sickTimer;
 
-	// Strategy used by the snake (Q-learning, human, etc.)
-	transient Strategy strategy;
+	// Strategy used by the snake (Q-learning, human, etc.), through the policy handle of its game
+	transient Policy policy;
 
 	// Used to grow the snake after eating
 	int oldTailX = -1;
@@ -69,7 +73,13 @@ public class Snake implements Serializable{
 	 * Chooses an action for the snake using its strategy
 	 */
 	public AgentAction play(SnakeGame game) {
-		return strategy.chooseAction(this.id, game);
+		if(!Metrics.ENABLED) {
+			return policy.chooseAction(this.id, game);
+		}
+		long start = System.nanoTime();
+		AgentAction action = policy.chooseAction(this.id, game);
+		Metrics.CHOOSE_ACTION.record(System.nanoTime() - start);
+		return action;
 	}
 	
 
@@ -123,8 +133,12 @@ public class Snake implements Serializable{
 	 * Updates the strategy (Q-table) if in training mode
 	 */
 	public void update(SnakeGame state, AgentAction action, SnakeGame nextState, int reward ) {
-		if(this.strategy.isModeTrain()) {
-			this.strategy.update(this.id, state, action, nextState, reward, isDead );
+		if(this.policy.isModeTrain()) {
+			long start = Metrics.ENABLED ? System.nanoTime() : 0;
+			this.policy.update(this.id, state, action, nextState, reward, isDead );
+			if(Metrics.ENABLED) {
+				Metrics.UPDATE.record(System.nanoTime() - start);
+			}
 		}
 	}
 	
@@ -162,14 +176,28 @@ public class Snake implements Serializable{
 	 * Returns the strategy used by the snake
 	 */
 	public Strategy getStrategy() {
-		return strategy;
+		return policy.getStrategy();
 	}
 
 	/**
-	 * Sets the strategy for the snake
+	 * Sets the strategy for the snake, in the current mode of the strategy
 	 */
 	public void setStrategy(Strategy strategy) {
-		this.strategy = strategy;
+		this.policy = strategy.newPolicy(strategy.isModeTrain());
+	}
+
+	/**
+	 * Returns the policy handle through which the snake plays its strategy
+	 */
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Sets the policy handle of the snake (its strategy, mode and random numbers in this game)
+	 */
+	public void setPolicy(Policy policy) {
+		this.policy = policy;
 	}
 
 	/**
@@ -286,4 +314,13 @@ public class Snake implements Serializable{
 		return oldTailY;
 	}
 
+
+	/**
+	 * Sets the old tail position (used when a game state is restored)
+	 */
+	public void setOldTail(int oldTailX, int oldTailY) {
+		this.oldTailX = oldTailX;
+		this.oldTailY = oldTailY;
+	}
+
 }
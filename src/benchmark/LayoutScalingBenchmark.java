@@ -0,0 +1,149 @@
+package benchmark;
+
+import java.util.ArrayList;
+
+import model.InputMap;
+import model.LayoutGenerator;
+import model.SnakeGame;
+import strategy.Strategy;
+import strategy.StrategyAdvanced;
+
+
+// Sweeps the board size of generated layouts and reports how the simulation scales:
+// turns per second and heap used per game.
+// Arguments (all optional, key=value): sizes=10,50,100 density=0.05 snakes=1 games=5 turns=300 seed=42
+public class LayoutScalingBenchmark {
+
+	public static void main(String[] args) throws Exception {
+
+		String sizes = "10,25,50,100,250,500,1000";
+		double density = 0.05;
+		int nbSnakes = 1;
+		int nbGames = 5;
+		int maxTurn = 300;
+		long seed = 42;
+
+		for(String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if(kv.length != 2) {
+				throw new IllegalArgumentException("Expected key=value, got " + arg);
+			}
+			switch(kv[0]) {
+			case "sizes":
+				sizes = kv[1];
+				break;
+			case "density":
+				density = Double.parseDouble(kv[1]);
+				break;
+			case "snakes":
+				nbSnakes = Integer.parseInt(kv[1]);
+				break;
+			case "games":
+				nbGames = Integer.parseInt(kv[1]);
+				break;
+			case "turns":
+				maxTurn = Integer.parseInt(kv[1]);
+				break;
+			case "seed":
+				seed = Long.parseLong(kv[1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + kv[0]);
+			}
+		}
+
+		System.out.println("size\tsnakes\tgames\tturns\tturns/sec\tbytes/game");
+
+		for(String s : sizes.split(",")) {
+
+			int size = Integer.parseInt(s.trim());
+
+			InputMap inputMap = new LayoutGenerator(size, size, density, nbSnakes, seed).generateMap();
+
+			// Warmup on a single game so that the JIT does not weigh on the small boards
+			runGames(inputMap, 1, maxTurn);
+
+			long memory = measureMemoryPerGame(inputMap, nbGames);
+
+			long start = System.nanoTime();
+			long turns = runGames(inputMap, nbGames, maxTurn);
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.println(size + "\t" + nbSnakes + "\t" + nbGames + "\t" + turns + "\t" + String.format("%.1f", turns / seconds) + "\t" + memory);
+		}
+	}
+
+
+	/**
+	 * Plays nbGames games sequentially with StrategyAdvanced and returns the total number of turns played
+	 */
+	static long runGames(InputMap inputMap, int nbGames, int maxTurn) {
+
+		long turns = 0;
+
+		for(int i = 0; i < nbGames; i++) {
+			SnakeGame snakeGame = createGame(inputMap, maxTurn);
+			snakeGame.run();
+			turns += snakeGame.getTurn();
+		}
+
+		return turns;
+	}
+
+
+	/**
+	 * Heap retained by an initialized game, averaged over nbGames games kept alive together
+	 */
+	static long measureMemoryPerGame(InputMap inputMap, int nbGames) {
+
+		Runtime runtime = Runtime.getRuntime();
+
+		forceGc();
+		long before = runtime.totalMemory() - runtime.freeMemory();
+
+		ArrayList<SnakeGame> games = new ArrayList<SnakeGame>();
+		for(int i = 0; i < nbGames; i++) {
+			games.add(createGame(inputMap, 1));
+		}
+
+		forceGc();
+		long after = runtime.totalMemory() - runtime.freeMemory();
+
+		// Keeps the games reachable until the second measure
+		if(games.size() != nbGames) {
+			throw new IllegalStateException();
+		}
+
+		return Math.max(0, (after - before) / nbGames);
+	}
+
+
+	// A single System.gc() is only a hint, a few rounds give a stable heap measure
+	private static void forceGc() {
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+
+	static SnakeGame createGame(InputMap inputMap, int maxTurn) {
+
+		Strategy[] strats = new Strategy[inputMap.getStart_snakes().size()];
+		for(int j = 0; j < strats.length; j++) {
+			strats[j] = new StrategyAdvanced();
+		}
+
+		SnakeGame snakeGame = new SnakeGame(maxTurn, inputMap, true);
+		snakeGame.setStrategies(strats);
+		snakeGame.init();
+		snakeGame.setTime(0);
+
+		return snakeGame;
+	}
+
+}
@@ -7,6 +7,8 @@ import strategy.StrategyHuman;
 import strategy.StrategyRandom;
 import strategy.StrategyAdvanced;
 import strategy.StrategyDown;
+import strategy.StrategyMCTS;
+import strategy.StrategyPathfinding;
 import utils.AgentAction;
 import utils.ColorSnake;
 import utils.FeaturesSnake;
@@ -39,6 +41,14 @@ public class SnakeFactory  {
         case "Advanced":
         	snake.setStrategy(new StrategyAdvanced());
 
+		break;
+        case "MCTS":
+        	snake.setStrategy(new StrategyMCTS(50, Runtime.getRuntime().availableProcessors(), "safe", 20, 2.0));
+
+		break;
+        case "Pathfinding":
+        	snake.setStrategy(new StrategyPathfinding());
+
 		break;
         default:
         	snake.setStrategy(new StrategyDown());
@@ -6,6 +6,8 @@ import utils.ItemType;
 
 public class Item implements Serializable {
 
+	private static final long serialVersionUID = 1L;
+
 	private int x;
 	private int y;
 	
@@ -0,0 +1,17 @@
+package main_duel;
+
+import training.SelfPlayLeague;
+
+
+// Self-play training on a duel layout, without any window (see training.SelfPlayLeague).
+// Example: java main_duel.main_selfPlayMode_duel strategy=approximate layout=layouts/duel/arena.lay cycles=200 ntrain=50 pool=8 snapshotEvery=10
+public class main_selfPlayMode_duel {
+
+	public static void main(String[] args) throws Exception {
+
+		System.setProperty("java.awt.headless", "true");
+
+		SelfPlayLeague.fromArgs(args).run();
+	}
+
+}
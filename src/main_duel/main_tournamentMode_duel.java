@@ -0,0 +1,17 @@
+package main_duel;
+
+import training.Tournament;
+
+
+// Round-robin tournament between strategies on duel layouts, without any window (see training.Tournament).
+// Example: java main_duel.main_tournamentMode_duel players=Advanced,Random,Pathfinding,checkpoints/learner_final.ser maxRounds=30 threads=8
+public class main_tournamentMode_duel {
+
+	public static void main(String[] args) throws Exception {
+
+		System.setProperty("java.awt.headless", "true");
+
+		Tournament.fromArgs(args).run();
+	}
+
+}
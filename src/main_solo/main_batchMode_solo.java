@@ -8,6 +8,7 @@ import model.Game;
 import model.InputMap;
 import model.SnakeGame;
 import strategy.ApproximateQLearning_solo;
+import strategy.Policy;
 import strategy.Strategy;
 import strategy.TabularQLearning_solo;
 import utils.AgentAction;
@@ -100,13 +101,11 @@ public class main_batchMode_solo {
         double[] scoreStrats = new double[arrayStrats.length];
         ArrayList<SnakeGame> snakeGames = new ArrayList<SnakeGame>();
 
-        // Initialize and start all games
+        // Initialize and start all games, each with its own policy handles so that the mode of a game
+        // does not leak into the games already running
         for(int i = 0; i < nbGames; i++ ) {
-            for(int j =0; j < arrayStrats.length; j++) {
-                arrayStrats[j].setModeTrain(modeTrain);
-            }
             SnakeGame snakeGame = new SnakeGame(maxTurnSnakeGame, inputMap, randomFirstApple);
-            snakeGame.setStrategies(arrayStrats);
+            snakeGame.setPolicies(Policy.of(arrayStrats, modeTrain));
             snakeGame.init();
             snakeGame.setTime(0);
             snakeGames.add(snakeGame);
@@ -149,10 +148,7 @@ public class main_batchMode_solo {
      */
     private static void vizualize(int maxTurnSnakeGame, InputMap inputMap, Strategy[] arrayStrats, boolean modeTrain, boolean randomFirstApple) {
         SnakeGame snakeGame = new SnakeGame(maxTurnSnakeGame, inputMap, randomFirstApple);
-        for(int j =0; j < arrayStrats.length; j++) {
-            arrayStrats[j].setModeTrain(modeTrain);
-        }
-        snakeGame.setStrategies(arrayStrats);
+        snakeGame.setPolicies(Policy.of(arrayStrats, modeTrain));
         snakeGame.init();
         snakeGame.setTime(10);
 
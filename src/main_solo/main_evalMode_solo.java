@@ -0,0 +1,104 @@
+package main_solo;
+
+import java.util.function.Supplier;
+
+import model.InputMap;
+import strategy.Strategy;
+import training.PairedEvaluation;
+import training.Tournament;
+
+
+// Evaluation of a strategy, or comparison of two, on a fixed set of seeds (see training.PairedEvaluation).
+// a and b are names of registered strategies (Advanced, Random, Pathfinding...) or files of saved strategies.
+// Example: java main_solo.main_evalMode_solo a=checkpoints/strategy_200.ser b=checkpoints/strategy_100.ser maxGames=500
+// Other keys: layout, maxTurn, randomFirstApple, seed, batch, minGames, tolerance, z, threads
+public class main_evalMode_solo {
+
+	public static void main(String[] args) throws Exception {
+
+		System.setProperty("java.awt.headless", "true");
+
+		String a = null;
+		String b = null;
+		String layout = "layouts/alone/smallNoWall_alone.lay";
+		int maxTurn = 300;
+		boolean randomFirstApple = true;
+		long seed = 0;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int batch = 20;
+		int minGames = 20;
+		int maxGames = 1000;
+		double tolerance = 0;
+		double z = 1.96;
+
+		for(String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if(kv.length != 2) {
+				throw new IllegalArgumentException("Expected key=value, got " + arg);
+			}
+			switch(kv[0]) {
+			case "a":
+				a = kv[1];
+				break;
+			case "b":
+				b = kv[1];
+				break;
+			case "layout":
+				layout = kv[1];
+				break;
+			case "maxTurn":
+				maxTurn = Integer.parseInt(kv[1]);
+				break;
+			case "randomFirstApple":
+				randomFirstApple = Boolean.parseBoolean(kv[1]);
+				break;
+			case "seed":
+				seed = Long.parseLong(kv[1]);
+				break;
+			case "threads":
+				threads = Integer.parseInt(kv[1]);
+				break;
+			case "batch":
+				batch = Integer.parseInt(kv[1]);
+				break;
+			case "minGames":
+				minGames = Integer.parseInt(kv[1]);
+				break;
+			case "maxGames":
+				maxGames = Integer.parseInt(kv[1]);
+				break;
+			case "tolerance":
+				tolerance = Double.parseDouble(kv[1]);
+				break;
+			case "z":
+				z = Double.parseDouble(kv[1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + kv[0]);
+			}
+		}
+
+		if(a == null) {
+			System.out.println("Erreur : a=<strategy> est obligatoire");
+			return;
+		}
+
+		PairedEvaluation evaluation = new PairedEvaluation(new InputMap(layout), maxTurn, randomFirstApple, seed, threads);
+		evaluation.setBatch(batch);
+		evaluation.setMinGames(minGames);
+		evaluation.setMaxGames(maxGames);
+		evaluation.setTolerance(tolerance);
+		evaluation.setZ(z);
+
+		Supplier<Strategy> playerA = Tournament.playerSupplier(a);
+
+		if(b == null) {
+			System.out.println(a + " : " + evaluation.evaluate(playerA));
+		} else {
+			System.out.println(a + " - " + b + " : " + evaluation.compare(playerA, Tournament.playerSupplier(b)));
+		}
+
+		evaluation.shutdown();
+	}
+
+}
@@ -0,0 +1,209 @@
+package main_solo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.lang3.SerializationUtils;
+
+import metrics.GameResultLog;
+import metrics.Metrics;
+import model.InputMap;
+import strategy.Strategy;
+import strategy.StrategyAdvanced;
+import strategy.NeuralQLearning_solo;
+import strategy.TabularQLearning_solo;
+import training.GameRunner;
+import training.PairedEvaluation;
+import training.TrainingConfig;
+
+
+// Non-interactive batch trainer: same test/train loop as main_batchMode_solo, configured by
+// key=value arguments or a properties file (see TrainingConfig), and never opens a window.
+// By default the test games of a cycle run on a frozen copy of the strategy, next to its training games (asyncTest).
+// Example: java main_solo.main_headlessMode_solo strategy=approximate cycles=1000 threads=8 seed=1 checkpointDir=checkpoints
+// Add -Dsnake.metrics=true -Dsnake.metrics.file=metrics.log to collect the metrics of the run (see metrics.Metrics).
+public class main_headlessMode_solo {
+
+	// Number of test batches that may still be running when a new training batch starts
+	private static final int MAX_PENDING_TESTS = 2;
+
+	public static void main(String[] args) throws Exception {
+
+		// Fail fast if something tries to open a window
+		System.setProperty("java.awt.headless", "true");
+
+		TrainingConfig config = TrainingConfig.fromArgs(args);
+		System.out.println("Config : " + config);
+
+		InputMap inputMap = new InputMap(config.getLayout());
+
+		Strategy strategy;
+		if(config.getResume().isEmpty()) {
+			strategy = config.createStrategy();
+		} else {
+			InputStream in = new FileInputStream(config.getResume());
+			strategy = SerializationUtils.deserialize(in);
+			in.close();
+			System.out.println("Resumed from " + config.getResume());
+		}
+
+		if(strategy instanceof TabularQLearning_solo) {
+			TabularQLearning_solo tabular = (TabularQLearning_solo) strategy;
+			Metrics.setQTableSizeGauge(() -> tabular.getQTableSize());
+			Metrics.setQTableEvictionGauges(() -> tabular.getEvictions(), () -> tabular.getHitRate());
+		}
+
+		// The trained strategy drives the first snake, the other snakes (if any) play StrategyAdvanced
+		Strategy[] arrayStrategies = new Strategy[inputMap.getStart_snakes().size()];
+		arrayStrategies[0] = strategy;
+		for(int j = 1; j < arrayStrategies.length; j++) {
+			arrayStrategies[j] = new StrategyAdvanced();
+		}
+
+		if(!config.getCheckpointDir().isEmpty()) {
+			new File(config.getCheckpointDir()).mkdirs();
+		}
+
+		GameRunner runner = new GameRunner(config.getThreads());
+		runner.setStatsWindow(config.getStatsWindow());
+		runner.setDecisionTimeout(config.getDecisionTimeout());
+		if(!config.getReplayDir().isEmpty()) {
+			runner.setReplayRecording(config.getReplayDir(), config.getReplayEvery());
+		}
+
+		GameResultLog resultLog = null;
+		if(!config.getResultLog().isEmpty()) {
+			resultLog = new GameResultLog(config.getResultLog());
+			runner.setResultLog(resultLog);
+		}
+
+		// Checkpoints are compared with the previous one on a fixed seed set
+		PairedEvaluation evaluation = null;
+		Strategy previousCheckpoint = null;
+		if(config.getEvalGames() > 0) {
+			evaluation = new PairedEvaluation(inputMap, config.getMaxTurn(), config.isRandomFirstApple(), config.getEvalSeed(), config.getThreads());
+			evaluation.setMaxGames(config.getEvalGames());
+		}
+
+		// Index of the next game, to give every game of the run its own seed
+		long nbGamesPlayed = 0;
+
+		// Test batches still running on their snapshot, oldest first
+		ArrayDeque<CompletableFuture<Void>> pendingTests = new ArrayDeque<CompletableFuture<Void>>();
+
+		for(long cpt = 0; cpt < config.getCycles(); cpt++) {
+
+			long testSeed = seedOf(config, nbGamesPlayed);
+			nbGamesPlayed += config.getNbTestGames();
+			long trainSeed = seedOf(config, nbGamesPlayed);
+			nbGamesPlayed += config.getNbTrainGames();
+
+			if(!config.isAsyncTest()) {
+				double[] testScores = runner.runGames(config.getNbTestGames(), config.getMaxTurn(), inputMap, arrayStrategies, false, config.isRandomFirstApple(), testSeed);
+				double[] trainScores = runner.runGames(config.getNbTrainGames(), config.getMaxTurn(), inputMap, arrayStrategies, true, config.isRandomFirstApple(), trainSeed);
+
+				System.out.println("Cycle " + cpt + " - test average global score : " + testScores[0] + " - train average global score : " + trainScores[0]);
+				System.out.println("  rolling test  : " + runner.getTestStats());
+				System.out.println("  rolling train : " + runner.getTrainStats());
+				printSchedules(config, strategy);
+			} else {
+				// The test games of the cycle play a copy of the strategy frozen before its training games;
+				// they are queued behind the training games, fill the workers left idle at the end of the
+				// training batch, and their score is reported under the cycle of the snapshot
+				Strategy[] snapshotStrategies = new Strategy[arrayStrategies.length];
+				snapshotStrategies[0] = SerializationUtils.clone(strategy);
+				for(int j = 1; j < snapshotStrategies.length; j++) {
+					snapshotStrategies[j] = new StrategyAdvanced();
+				}
+
+				CompletableFuture<double[]> training = runner.submitGames(config.getNbTrainGames(), config.getMaxTurn(), inputMap, arrayStrategies, true, config.isRandomFirstApple(), trainSeed);
+				long cycle = cpt;
+				pendingTests.add(runner.submitGames(config.getNbTestGames(), config.getMaxTurn(), inputMap, snapshotStrategies, false, config.isRandomFirstApple(), testSeed)
+						.thenAccept(testScores -> System.out.println("Cycle " + cycle + " - test average global score : " + testScores[0]
+								+ "\n  rolling test  : " + runner.getTestStats())));
+
+				double[] trainScores = training.get();
+				System.out.println("Cycle " + cpt + " - train average global score : " + trainScores[0]);
+				System.out.println("  rolling train : " + runner.getTrainStats());
+				printSchedules(config, strategy);
+
+				// Bounds the number of snapshots alive when testing is slower than training
+				while(pendingTests.size() > MAX_PENDING_TESTS || (!pendingTests.isEmpty() && pendingTests.peek().isDone())) {
+					pendingTests.poll().get();
+				}
+			}
+
+			if(!config.getCheckpointDir().isEmpty() && (cpt + 1) % config.getCheckpointEvery() == 0) {
+				saveCheckpoint(strategy, new File(config.getCheckpointDir(), "strategy_" + (cpt + 1) + ".ser"));
+
+				if(evaluation != null) {
+					Strategy checkpoint = SerializationUtils.clone(strategy);
+					checkpoint.setModeTrain(false);
+					if(previousCheckpoint != null) {
+						Strategy previous = previousCheckpoint;
+						System.out.println("  checkpoint " + (cpt + 1) + " vs previous : " + evaluation.compare(() -> checkpoint, () -> previous));
+					}
+					previousCheckpoint = checkpoint;
+				}
+			}
+		}
+
+		while(!pendingTests.isEmpty()) {
+			pendingTests.poll().get();
+		}
+
+		if(!config.getCheckpointDir().isEmpty()) {
+			saveCheckpoint(strategy, new File(config.getCheckpointDir(), "strategy_final.ser"));
+		}
+
+		runner.shutdown();
+		if(evaluation != null) {
+			evaluation.shutdown();
+		}
+
+		if(resultLog != null) {
+			resultLog.close();
+			if(resultLog.getDropped() > 0) {
+				System.out.println("Erreur : " + resultLog.getDropped() + " outcomes missing from " + config.getResultLog());
+			}
+		}
+	}
+
+
+	// Current values of the scheduled parameters, when there are any, and visits of the Q-table,
+	// batches of the inference server
+	private static void printSchedules(TrainingConfig config, Strategy strategy) {
+		if(!config.getEpsilonSchedule().isEmpty() || !config.getAlphaSchedule().isEmpty()) {
+			System.out.println("  schedules     : step " + strategy.getSteps() + " - epsilon " + strategy.getEpsilon(-1) + " - alpha " + strategy.getAlpha(-1));
+		}
+		if(strategy instanceof TabularQLearning_solo) {
+			System.out.println("  q-table       : " + ((TabularQLearning_solo) strategy).getTableStats(5));
+		}
+		if(strategy instanceof NeuralQLearning_solo && ((NeuralQLearning_solo) strategy).getInferenceServer() != null) {
+			System.out.println("  inference     : " + ((NeuralQLearning_solo) strategy).getInferenceServer());
+		}
+	}
+
+
+	private static long seedOf(TrainingConfig config, long gameIndex) {
+		return config.getSeed() < 0 ? -1 : config.getSeed() + gameIndex;
+	}
+
+
+	/**
+	 * Writes the strategy (and its learned parameters) to a file
+	 */
+	static void saveCheckpoint(Strategy strategy, File file) throws Exception {
+
+		OutputStream out = new FileOutputStream(file);
+		SerializationUtils.serialize(strategy, out);
+		out.close();
+		System.out.println("Checkpoint saved in " + file);
+	}
+
+}
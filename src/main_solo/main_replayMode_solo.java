@@ -0,0 +1,35 @@
+package main_solo;
+
+import controller.ControllerSnakeGame;
+import model.InputMap;
+import model.SnakeGame;
+import replay.Replay;
+import replay.ReplayPlayer;
+import view.PanelSnakeGame;
+import view.ViewSnakeGame;
+
+
+// Opens a recorded game (replayDir=<dir> in main_headlessMode_solo) in a window with a slider to scrub through it.
+// Arguments: <replay file> [keyframe interval, default 50]
+public class main_replayMode_solo {
+
+	public static void main(String[] args) throws Exception {
+
+		Replay replay = Replay.read(args[0]);
+		int keyframeInterval = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+		System.out.println("Replay of " + replay.getLayout() + " - seed " + replay.getSeed() + " - " + replay.getNbTurns() + " turns");
+
+		ReplayPlayer player = new ReplayPlayer(replay, keyframeInterval);
+
+		InputMap inputMap = player.getInputMap();
+		SnakeGame snakeGame = player.seek(0);
+
+		ControllerSnakeGame controllerSnakeGame = new ControllerSnakeGame(snakeGame);
+		PanelSnakeGame panelSnakeGame = new PanelSnakeGame(inputMap.getSizeX(), inputMap.getSizeY(), inputMap.get_walls(), inputMap.getStart_snakes(), inputMap.getStart_items());
+		ViewSnakeGame viewSnakeGame = new ViewSnakeGame(controllerSnakeGame, snakeGame, panelSnakeGame);
+
+		viewSnakeGame.enableReplay(player);
+	}
+
+}
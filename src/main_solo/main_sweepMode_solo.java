@@ -0,0 +1,18 @@
+package main_solo;
+
+import training.HyperparameterSweep;
+
+
+// Hyperparameter sweep of the solo learners, without any window.
+// Example (grid): java main_solo.main_sweepMode_solo strategy=tabular cycles=50 epsilon=0.1,0.2,0.3 alpha=0.01,0.1
+// Example (random): java main_solo.main_sweepMode_solo mode=random trials=30 alpha=0.001:0.5 gamma=0.8:0.99
+public class main_sweepMode_solo {
+
+	public static void main(String[] args) throws Exception {
+
+		System.setProperty("java.awt.headless", "true");
+
+		HyperparameterSweep.fromArgs(args).run();
+	}
+
+}
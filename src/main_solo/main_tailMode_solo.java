@@ -0,0 +1,62 @@
+package main_solo;
+
+import metrics.GameResultLog;
+import metrics.RollingStats;
+
+
+// Follows the result log of a running training (resultLog=<file> in main_headlessMode_solo)
+// and prints the rolling statistics of the test and train scores of the first snake.
+// Example: java main_solo.main_tailMode_solo log=results.log window=100 every=100
+// log is required, window is the number of games of the statistics, every the number of games between two prints
+public class main_tailMode_solo {
+
+	public static void main(String[] args) throws Exception {
+
+		String filename = null;
+		int window = 100;
+		int every = 100;
+
+		for(String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if(kv.length != 2) {
+				throw new IllegalArgumentException("Expected key=value, got " + arg);
+			}
+			switch(kv[0]) {
+			case "log":
+				filename = kv[1];
+				break;
+			case "window":
+				window = Integer.parseInt(kv[1]);
+				break;
+			case "every":
+				every = Integer.parseInt(kv[1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + kv[0]);
+			}
+		}
+
+		if(filename == null) {
+			throw new IllegalArgumentException("Missing log=<file>");
+		}
+
+		int printEvery = every;
+		RollingStats testStats = new RollingStats(window, 0, 100, 100);
+		RollingStats trainStats = new RollingStats(window, 0, 100, 100);
+
+		GameResultLog.tail(filename, outcome -> {
+
+			if(outcome.getSnake() != 0) {
+				return;
+			}
+
+			RollingStats stats = outcome.isModeTrain() ? trainStats : testStats;
+			stats.add(outcome.getScore());
+
+			if(stats.getTotal() % printEvery == 0) {
+				System.out.println("game " + outcome.getGame() + (outcome.isModeTrain() ? " train " : " test  ") + stats);
+			}
+		}, 200);
+	}
+
+}
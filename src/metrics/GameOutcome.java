@@ -0,0 +1,86 @@
+package metrics;
+
+import model.SnakeGame;
+import utils.DeathCause;
+
+
+// Outcome of one snake in one finished game, one line of the results log
+public class GameOutcome {
+
+	private long game;
+	private int snake;
+	private boolean modeTrain;
+	private int score;
+	private int length;
+	private int turns;
+	private DeathCause cause;
+
+
+	public GameOutcome(long game, int snake, boolean modeTrain, int score, int length, int turns, DeathCause cause) {
+		this.game = game;
+		this.snake = snake;
+		this.modeTrain = modeTrain;
+		this.score = score;
+		this.length = length;
+		this.turns = turns;
+		this.cause = cause;
+	}
+
+
+	/**
+	 * Outcome of a snake at the end of a game
+	 * @param game Index of the game in the run
+	 */
+	public static GameOutcome of(long game, SnakeGame snakeGame, int idxSnake, boolean modeTrain) {
+
+		int deathTurn = snakeGame.getTabDeathTurnSnakes()[idxSnake];
+		return new GameOutcome(game, idxSnake, modeTrain,
+				snakeGame.getTabTotalScoreSnakes()[idxSnake],
+				snakeGame.getSnakes().get(idxSnake).getSize(),
+				deathTurn < 0 ? snakeGame.getTurn() : deathTurn,
+				snakeGame.getTabDeathCauseSnakes()[idxSnake]);
+	}
+
+
+	public static final String CSV_HEADER = "game,snake,mode,score,length,turns,cause";
+
+	public String toCsv() {
+		return game + "," + snake + "," + (modeTrain ? "train" : "test") + "," + score + "," + length + "," + turns + "," + cause;
+	}
+
+	public static GameOutcome fromCsv(String line) {
+		String[] f = line.split(",");
+		return new GameOutcome(Long.parseLong(f[0]), Integer.parseInt(f[1]), f[2].equals("train"),
+				Integer.parseInt(f[3]), Integer.parseInt(f[4]), Integer.parseInt(f[5]), DeathCause.valueOf(f[6]));
+	}
+
+
+	public long getGame() {
+		return game;
+	}
+
+	public int getSnake() {
+		return snake;
+	}
+
+	public boolean isModeTrain() {
+		return modeTrain;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public int getTurns() {
+		return turns;
+	}
+
+	public DeathCause getCause() {
+		return cause;
+	}
+
+}
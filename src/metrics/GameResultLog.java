@@ -0,0 +1,224 @@
+package metrics;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+
+// Append-only CSV log of the game outcomes.
+// The games only push their outcomes in a bounded queue; a background thread does the buffered writes,
+// and flushes whenever the queue is empty so that a reader tailing the file sees the games promptly.
+public class GameResultLog {
+
+	// Marks the end of the log in the queue
+	private static final GameOutcome END = new GameOutcome(-1, -1, false, 0, 0, 0, null);
+
+	private final BlockingQueue<GameOutcome> queue = new ArrayBlockingQueue<GameOutcome>(1 << 16);
+	private final BufferedWriter writer;
+	private final Thread thread;
+
+	private volatile IOException error;
+
+	// Outcomes lost because the writer had stopped
+	private final LongAdder dropped = new LongAdder();
+
+	// Longest wait of close() for the writer, and step of the waits on the queue
+	private static final long CLOSE_MILLIS = 10_000;
+	private static final long WAIT_MILLIS = 100;
+
+
+	/**
+	 * Opens the log, appending to the file if it already exists
+	 */
+	public GameResultLog(String filename) throws IOException {
+
+		File file = new File(filename);
+		boolean isNew = !file.exists() || file.length() == 0;
+
+		this.writer = new BufferedWriter(new FileWriter(file, true), 1 << 16);
+		if(isNew) {
+			writer.write(GameOutcome.CSV_HEADER);
+			writer.newLine();
+			writer.flush();
+		}
+
+		this.thread = new Thread(this::writeLoop, "snake-result-log");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+
+	/**
+	 * Queues an outcome; blocks only if the writer is far behind. An interrupt does not drop the outcome
+	 * (the interrupt status is kept for the caller); an outcome is only dropped, and counted, once the
+	 * writer has stopped.
+	 */
+	public void log(GameOutcome outcome) {
+
+		if(error != null) {
+			throw new IllegalStateException("Result log failed", error);
+		}
+
+		boolean interrupted = false;
+		try {
+			while(true) {
+				try {
+					if(queue.offer(outcome, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+						return;
+					}
+					if(!thread.isAlive()) {
+						dropped.increment();
+						return;
+					}
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Number of outcomes that never reached the file: logged after the writer stopped, or still
+	 * queued when close() gave up waiting for it
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+
+	private void writeLoop() {
+
+		ArrayList<GameOutcome> batch = new ArrayList<GameOutcome>();
+
+		try {
+			while(true) {
+
+				batch.add(queue.take());
+				queue.drainTo(batch);
+
+				synchronized(writer) {
+					for(int i = 0; i < batch.size(); i++) {
+						if(batch.get(i) == END) {
+							writer.flush();
+							return;
+						}
+						writer.write(batch.get(i).toCsv());
+						writer.newLine();
+					}
+					batch.clear();
+
+					if(queue.isEmpty()) {
+						writer.flush();
+					}
+				}
+			}
+		} catch (IOException e) {
+			error = e;
+			dropped.add(batch.size());
+		} catch (InterruptedException e) {
+			// Stopped by close(): the outcomes taken but not written are lost
+			dropped.add(batch.size());
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * Writes the queued outcomes and closes the file. Waits at most CLOSE_MILLIS for the writer, whether
+	 * or not the calling thread is interrupted; the outcomes it could not write are counted in getDropped().
+	 */
+	public void close() throws IOException {
+
+		long deadline = System.currentTimeMillis() + CLOSE_MILLIS;
+		boolean interrupted = false;
+
+		// The end marker goes in once there is room, unless the writer has stopped
+		boolean queued = false;
+		while(!queued && thread.isAlive() && System.currentTimeMillis() < deadline) {
+			try {
+				queued = queue.offer(END, WAIT_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		while(thread.isAlive() && System.currentTimeMillis() < deadline) {
+			try {
+				thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		// Stuck past the deadline: the writer is told to stop, what it has not written is lost
+		if(thread.isAlive()) {
+			thread.interrupt();
+		}
+
+		ArrayList<GameOutcome> left = new ArrayList<GameOutcome>();
+		queue.drainTo(left);
+		left.remove(END);
+		dropped.add(left.size());
+
+		synchronized(writer) {
+			writer.close();
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		if(error != null) {
+			throw error;
+		}
+	}
+
+
+	/**
+	 * Follows a log written by another process (like tail -f): gives every outcome already in
+	 * the file to the consumer, then the new ones as they are appended, until the thread is interrupted.
+	 * @param pollMillis Time to wait when the end of the file is reached
+	 */
+	public static void tail(String filename, Consumer<GameOutcome> consumer, long pollMillis) throws IOException {
+
+		BufferedReader reader = new BufferedReader(new FileReader(filename));
+		StringBuilder partial = new StringBuilder();
+
+		try {
+			while(!Thread.currentThread().isInterrupted()) {
+
+				int c = reader.read();
+
+				if(c == -1) {
+					try {
+						Thread.sleep(pollMillis);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				} else if(c == '\n') {
+					// A line is only used once complete, the writer may be in the middle of it
+					String line = partial.toString();
+					partial.setLength(0);
+					if(!line.isEmpty() && !line.equals(GameOutcome.CSV_HEADER)) {
+						consumer.accept(GameOutcome.fromCsv(line.trim()));
+					}
+				} else {
+					partial.append((char) c);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+}
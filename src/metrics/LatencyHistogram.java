@@ -0,0 +1,123 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+// Lock-free latency histogram with log-linear buckets (as in HdrHistogram):
+// every power of two is split in 16 sub-buckets, so any recorded value is known within about 6%.
+// Values are in nanoseconds; recording is a couple of atomic increments and never allocates.
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int NB_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final String name;
+	private final AtomicLongArray counts = new AtomicLongArray(NB_BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+
+
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+
+	/**
+	 * Records a duration in nanoseconds
+	 */
+	public void record(long nanos) {
+
+		if(nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(bucketOf(nanos));
+		count.increment();
+		sum.add(nanos);
+	}
+
+
+	static int bucketOf(long value) {
+
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+
+	// Smallest value falling in a bucket
+	static long lowestValueOf(int bucket) {
+
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		return (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+	}
+
+
+	/**
+	 * Value below which the given fraction of the recorded durations fall (0.5 = median)
+	 */
+	public long getPercentile(double fraction) {
+
+		long total = 0;
+		long[] snapshot = new long[NB_BUCKETS];
+		for(int i = 0; i < NB_BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if(total == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(fraction * total);
+		long seen = 0;
+		for(int i = 0; i < NB_BUCKETS; i++) {
+			seen += snapshot[i];
+			if(seen >= rank) {
+				return lowestValueOf(i);
+			}
+		}
+		return lowestValueOf(NB_BUCKETS - 1);
+	}
+
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : sum.sum() / (double) n;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+
+	/**
+	 * Forgets every recorded value
+	 */
+	public void reset() {
+		for(int i = 0; i < NB_BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+	}
+
+
+	@Override
+	public String toString() {
+		return name + " count=" + getCount() + " mean=" + String.format("%.0f", getMean()) + "ns p50=" + getPercentile(0.5)
+				+ "ns p99=" + getPercentile(0.99) + "ns p999=" + getPercentile(0.999) + "ns";
+	}
+
+}
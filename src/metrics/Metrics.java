@@ -0,0 +1,231 @@
+package metrics;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+import javax.management.ObjectName;
+
+
+// Instrumentation of the simulation and of the learners.
+// Disabled by default: ENABLED is a static final constant, so the JIT removes every
+// "if(Metrics.ENABLED)" block and the instrumentation costs nothing.
+// Enable with -Dsnake.metrics=true; the metrics are then published over JMX (snake:type=Metrics)
+// and, if -Dsnake.metrics.file=<file> is given, appended to that file every
+// -Dsnake.metrics.period seconds (default 10).
+public class Metrics implements MetricsMBean {
+
+	public static final boolean ENABLED = Boolean.getBoolean("snake.metrics");
+
+	public static final LongAdder GAMES = new LongAdder();
+	public static final LongAdder TURNS = new LongAdder();
+
+	public static final LatencyHistogram TAKE_TURN = new LatencyHistogram("takeTurn");
+	public static final LatencyHistogram CHOOSE_ACTION = new LatencyHistogram("chooseAction");
+	public static final LatencyHistogram UPDATE = new LatencyHistogram("update");
+	public static final LatencyHistogram ENCODE_STATE = new LatencyHistogram("encodeState");
+
+	private static final Metrics INSTANCE = new Metrics();
+
+	private static volatile LongSupplier qTableSize = () -> 0;
+	private static volatile LongSupplier qTableEvictions = () -> 0;
+	private static volatile DoubleSupplier qTableHitRate = () -> 0;
+
+	private volatile long startNanos = System.nanoTime();
+	private volatile long startAllocatedBytes = allocatedBytes();
+
+
+	static {
+		if(ENABLED) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName("snake:type=Metrics"));
+			} catch (Exception e) {
+				System.out.println("Erreur : metrics not published over JMX (" + e.getMessage() + ")");
+			}
+
+			String file = System.getProperty("snake.metrics.file");
+			if(file != null) {
+				startDump(file, Long.getLong("snake.metrics.period", 10));
+			}
+		}
+	}
+
+
+	private Metrics() {
+	}
+
+	public static Metrics get() {
+		return INSTANCE;
+	}
+
+
+	/**
+	 * Sets where the size of the Q-table is read from (the tabular learner being trained)
+	 */
+	public static void setQTableSizeGauge(LongSupplier gauge) {
+		qTableSize = gauge;
+	}
+
+	/**
+	 * Sets where the evictions and the hit rate of the Q-table are read from
+	 */
+	public static void setQTableEvictionGauges(LongSupplier evictions, DoubleSupplier hitRate) {
+		qTableEvictions = evictions;
+		qTableHitRate = hitRate;
+	}
+
+
+	/**
+	 * Appends the report to a file every periodSeconds seconds, from a daemon thread
+	 */
+	public static void startDump(String file, long periodSeconds) {
+
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "snake-metrics-dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		scheduler.scheduleAtFixedRate(() -> {
+			try {
+				PrintWriter writer = new PrintWriter(new FileWriter(file, true));
+				writer.println(System.currentTimeMillis() + " " + INSTANCE.getReport());
+				writer.close();
+			} catch (IOException e) {
+				System.out.println("Erreur : " + e.getMessage());
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+
+	// Bytes allocated by the live threads (the threads that already ended are not counted)
+	private static long allocatedBytes() {
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return 0;
+		}
+		long total = 0;
+		for(long allocated : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if(allocated > 0) {
+				total += allocated;
+			}
+		}
+		return total;
+	}
+
+
+	private double elapsedSeconds() {
+		return (System.nanoTime() - startNanos) / 1e9;
+	}
+
+	@Override
+	public long getGames() {
+		return GAMES.sum();
+	}
+
+	@Override
+	public long getTurns() {
+		return TURNS.sum();
+	}
+
+	@Override
+	public double getGamesPerSecond() {
+		return getGames() / elapsedSeconds();
+	}
+
+	@Override
+	public double getTurnsPerSecond() {
+		return getTurns() / elapsedSeconds();
+	}
+
+	@Override
+	public double getTakeTurnMeanNanos() {
+		return TAKE_TURN.getMean();
+	}
+
+	@Override
+	public long getTakeTurnP99Nanos() {
+		return TAKE_TURN.getPercentile(0.99);
+	}
+
+	@Override
+	public double getChooseActionMeanNanos() {
+		return CHOOSE_ACTION.getMean();
+	}
+
+	@Override
+	public long getChooseActionP99Nanos() {
+		return CHOOSE_ACTION.getPercentile(0.99);
+	}
+
+	@Override
+	public double getUpdateMeanNanos() {
+		return UPDATE.getMean();
+	}
+
+	@Override
+	public long getUpdateP99Nanos() {
+		return UPDATE.getPercentile(0.99);
+	}
+
+	@Override
+	public double getEncodeStateMeanNanos() {
+		return ENCODE_STATE.getMean();
+	}
+
+	@Override
+	public long getEncodeStateP99Nanos() {
+		return ENCODE_STATE.getPercentile(0.99);
+	}
+
+	@Override
+	public long getQTableSize() {
+		return qTableSize.getAsLong();
+	}
+
+	@Override
+	public long getQTableEvictions() {
+		return qTableEvictions.getAsLong();
+	}
+
+	@Override
+	public double getQTableHitRate() {
+		return qTableHitRate.getAsDouble();
+	}
+
+	@Override
+	public double getAllocationRateBytesPerSecond() {
+		return Math.max(0, allocatedBytes() - startAllocatedBytes) / elapsedSeconds();
+	}
+
+	@Override
+	public String getReport() {
+		return "games=" + getGames() + " turns=" + getTurns()
+				+ " games/s=" + String.format("%.1f", getGamesPerSecond()) + " turns/s=" + String.format("%.1f", getTurnsPerSecond())
+				+ " qTableSize=" + getQTableSize() + " qTableEvictions=" + getQTableEvictions()
+				+ " qTableHitRate=" + String.format("%.3f", getQTableHitRate()) + " alloc/s=" + String.format("%.0f", getAllocationRateBytesPerSecond())
+				+ " | " + TAKE_TURN + " | " + CHOOSE_ACTION + " | " + UPDATE + " | " + ENCODE_STATE;
+	}
+
+	@Override
+	public void reset() {
+		GAMES.reset();
+		TURNS.reset();
+		TAKE_TURN.reset();
+		CHOOSE_ACTION.reset();
+		UPDATE.reset();
+		ENCODE_STATE.reset();
+		startNanos = System.nanoTime();
+		startAllocatedBytes = allocatedBytes();
+	}
+
+}
@@ -0,0 +1,43 @@
+package metrics;
+
+
+// JMX view of the metrics (object name snake:type=Metrics)
+public interface MetricsMBean {
+
+	long getGames();
+
+	long getTurns();
+
+	double getGamesPerSecond();
+
+	double getTurnsPerSecond();
+
+	double getTakeTurnMeanNanos();
+
+	long getTakeTurnP99Nanos();
+
+	double getChooseActionMeanNanos();
+
+	long getChooseActionP99Nanos();
+
+	double getUpdateMeanNanos();
+
+	long getUpdateP99Nanos();
+
+	double getEncodeStateMeanNanos();
+
+	long getEncodeStateP99Nanos();
+
+	long getQTableSize();
+
+	long getQTableEvictions();
+
+	double getQTableHitRate();
+
+	double getAllocationRateBytesPerSecond();
+
+	String getReport();
+
+	void reset();
+
+}
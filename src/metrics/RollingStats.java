@@ -0,0 +1,138 @@
+package metrics;
+
+
+// Mean, variance and percentiles over the last "window" values, updated in O(1) per value.
+// Mean and variance come from running sums over a ring buffer; percentiles from a histogram of the
+// window with fixed bins over [min, max] (values outside are counted in the first or last bin).
+// A percentile is the lower edge of its bin: with bins of width 1 over integer scores, it is the exact score.
+public class RollingStats {
+
+	private final double[] values;
+	private int next;
+	private int size;
+
+	private double sum;
+	private double sumSquares;
+	// Running sums drift with floating point errors, they are recomputed once per window
+	private int sinceRecompute;
+
+	private final double min;
+	private final double binWidth;
+	private final int[] bins;
+
+	private long total;
+
+
+	/**
+	 * Constructor
+	 * @param window Number of most recent values taken into account
+	 * @param min Lower bound of the percentile histogram
+	 * @param max Upper bound of the percentile histogram
+	 * @param nbBins Number of bins of the percentile histogram
+	 */
+	public RollingStats(int window, double min, double max, int nbBins) {
+		this.values = new double[window];
+		this.min = min;
+		this.binWidth = (max - min) / nbBins;
+		this.bins = new int[nbBins];
+	}
+
+
+	public synchronized void add(double value) {
+
+		if(size == values.length) {
+			double old = values[next];
+			sum -= old;
+			sumSquares -= old * old;
+			bins[binOf(old)]--;
+		} else {
+			size++;
+		}
+
+		values[next] = value;
+		next = (next + 1) % values.length;
+		sum += value;
+		sumSquares += value * value;
+		bins[binOf(value)]++;
+		total++;
+
+		if(++sinceRecompute == values.length) {
+			recompute();
+		}
+	}
+
+
+	private void recompute() {
+		sum = 0;
+		sumSquares = 0;
+		for(int i = 0; i < size; i++) {
+			sum += values[i];
+			sumSquares += values[i] * values[i];
+		}
+		sinceRecompute = 0;
+	}
+
+
+	private int binOf(double value) {
+		int bin = (int) ((value - min) / binWidth);
+		return Math.max(0, Math.min(bins.length - 1, bin));
+	}
+
+
+	public synchronized double getMean() {
+		return size == 0 ? 0 : sum / size;
+	}
+
+	/**
+	 * Unbiased variance of the window
+	 */
+	public synchronized double getVariance() {
+		if(size < 2) {
+			return 0;
+		}
+		double mean = sum / size;
+		return Math.max(0, (sumSquares - size * mean * mean) / (size - 1));
+	}
+
+	public double getStd() {
+		return Math.sqrt(getVariance());
+	}
+
+
+	/**
+	 * Approximate percentile of the window (lower edge of the bin), fraction in [0, 1]
+	 */
+	public synchronized double getPercentile(double fraction) {
+
+		if(size == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(fraction * size));
+		long seen = 0;
+		for(int i = 0; i < bins.length; i++) {
+			seen += bins[i];
+			if(seen >= rank) {
+				return min + i * binWidth;
+			}
+		}
+		return min + (bins.length - 1) * binWidth;
+	}
+
+	public synchronized int getSize() {
+		return size;
+	}
+
+	/**
+	 * Number of values added since the creation, including those out of the window
+	 */
+	public synchronized long getTotal() {
+		return total;
+	}
+
+
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%.2f std=%.2f p10=%.1f p50=%.1f p90=%.1f", getSize(), getMean(), getStd(), getPercentile(0.1), getPercentile(0.5), getPercentile(0.9));
+	}
+
+}
@@ -5,6 +5,8 @@ import java.util.Observable;
 
 public abstract class Game extends Observable implements Runnable, Serializable{
 
+	private static final long serialVersionUID = 1L;
+
 	
 	int turn;
 	int maxTurn;
@@ -106,5 +108,9 @@ public abstract class Game extends Observable implements Runnable, Serializable{
 	public int getTurn() {
 		return turn;
 	}
+
+	public int getMaxTurn() {
+		return maxTurn;
+	}
 	
 }
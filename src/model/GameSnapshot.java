@@ -0,0 +1,76 @@
+package model;
+
+
+// Copy of the mutable state of a SnakeGame (snakes, items, scores, turn, random generator) in flat
+// primitive arrays. The arrays only grow, so once a snapshot has been used on a game, saving and
+// restoring that game again allocates nothing. Walls and the map never change during a game and are not copied.
+public class GameSnapshot {
+
+	int turn;
+	boolean isRunning;
+	long randomState;
+
+	int nbSnakes;
+	// Positions of snake s start at positionStart[s] in positionsX/positionsY, head first
+	int[] positionStart = new int[0];
+	int[] snakeSize = new int[0];
+	int[] positionsX = new int[0];
+	int[] positionsY = new int[0];
+	int[] lastMove = new int[0];
+	int[] invincibleTimer = new int[0];
+	int[] sickTimer = new int[0];
+	int[] oldTailX = new int[0];
+	int[] oldTailY = new int[0];
+	boolean[] isDead = new boolean[0];
+
+	int[] currentReward = new int[0];
+	int[] totalScore = new int[0];
+	int[] deathCause = new int[0];
+	int[] deathTurn = new int[0];
+
+	int nbItems;
+	int[] itemX = new int[0];
+	int[] itemY = new int[0];
+	int[] itemType = new int[0];
+
+
+	public GameSnapshot() {
+	}
+
+
+	// Makes room for the given number of snakes, body cells and items
+	void ensureCapacity(int snakes, int cells, int items) {
+
+		if(positionStart.length < snakes) {
+			positionStart = new int[snakes];
+			snakeSize = new int[snakes];
+			lastMove = new int[snakes];
+			invincibleTimer = new int[snakes];
+			sickTimer = new int[snakes];
+			oldTailX = new int[snakes];
+			oldTailY = new int[snakes];
+			isDead = new boolean[snakes];
+			currentReward = new int[snakes];
+			totalScore = new int[snakes];
+			deathCause = new int[snakes];
+			deathTurn = new int[snakes];
+		}
+		if(positionsX.length < cells) {
+			int capacity = Math.max(cells, positionsX.length * 2);
+			positionsX = new int[capacity];
+			positionsY = new int[capacity];
+		}
+		if(itemX.length < items) {
+			int capacity = Math.max(items, itemX.length * 2);
+			itemX = new int[capacity];
+			itemY = new int[capacity];
+			itemType = new int[capacity];
+		}
+	}
+
+
+	public int getTurn() {
+		return turn;
+	}
+
+}
@@ -8,6 +8,7 @@ import java.io.InputStreamReader;
 import java.io.Serializable;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import agent.Snake;
 import item.Item;
@@ -31,6 +32,9 @@ public class InputMap implements Serializable {
 	
 	private boolean walls[][];
 
+	// Lines of the layout, so that a record of the game can carry the map itself
+	private ArrayList<String> lines;
+
 
 	private ArrayList<FeaturesSnake> start_snakes ;
 	private ArrayList<FeaturesItem> start_items ;
@@ -51,28 +55,60 @@ public class InputMap implements Serializable {
 		InputStreamReader lecture =new InputStreamReader(flux);
 		buffer = new BufferedReader(lecture);
 		
+		ArrayList<String> lignes = new ArrayList<String>();
 		String ligne;
 
+		while ((ligne = buffer.readLine())!=null)
+		{
+			lignes.add(ligne);
+		}
+		buffer.close(); 
+		
+		parse(lignes);
+
+		}catch (Exception e){
+			System.out.println("Erreur : "+e.getMessage());
+		}
+
+		
+	}
+	
+	
+	/**
+	 * Builds a map directly from the lines of a layout, without going through a file
+	 * (used by the layout generator to avoid writing huge boards to disk).
+	 * @param name Name reported by getFilename()
+	 * @param lignes Lines of the layout, same syntax as the .lay files
+	 */
+	public InputMap(String name, List<String> lignes) throws Exception{
+		
+		this.filename = name;
+		
+		parse(lignes);
+		
+	}
+	
+	
+	private void parse(List<String> lignes) throws Exception{
+		
+		lines = new ArrayList<String>(lignes);
+		
 		int nbX=0;
 		int nbY=0;
 
-		while ((ligne = buffer.readLine())!=null)
+		for (String ligne : lignes)
 		{
 			ligne = ligne.trim();
 			if (nbX==0) {nbX = ligne.length();}
 			else if (nbX != ligne.length()) throw new Exception("Toutes les lignes doivent avoir la même longueur");
 			nbY++;
 		}			
-		buffer.close(); 
 			
 		size_x = nbX;
 		size_y = nbY;
 		
 		walls = new boolean [size_x][size_y];
 	
-		flux = new FileInputStream(filename); 
-		lecture = new InputStreamReader(flux);
-		buffer = new BufferedReader(lecture);
 		int y=0;
 	
 		
@@ -81,7 +117,7 @@ public class InputMap implements Serializable {
 				
 		int id = 0;
 		
-		while ((ligne=buffer.readLine())!=null)
+		for (String ligne : lignes)
 		{
 			ligne=ligne.trim();
 
@@ -141,14 +177,6 @@ public class InputMap implements Serializable {
 			y++;
 		}	
 		
-		buffer.close(); 
-		
-
-		}catch (Exception e){
-			System.out.println("Erreur : "+e.getMessage());
-		}
-
-		
 	}
 	
 
@@ -163,6 +191,10 @@ public class InputMap implements Serializable {
 		return filename;
 	}
 
+	public List<String> getLines() {
+		return lines;
+	}
+
 	public boolean[][] get_walls() {
 		return walls;
 	}
@@ -0,0 +1,229 @@
+package model;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Random;
+
+
+// Procedural generator of layouts in the .lay syntax read by InputMap.
+// The same parameters and seed always give the same layout, so benchmark runs can be compared.
+public class LayoutGenerator {
+
+	// InputMap trims every line, so empty cells cannot be spaces (they would vanish on the borders)
+	private static final char EMPTY = '#';
+	private static final char WALL = '%';
+	private static final char SNAKE = 'S';
+	private static final char APPLE = 'A';
+
+	private int sizeX;
+	private int sizeY;
+
+	// Fraction of the inner cells turned into walls (0 = no inner wall)
+	private double wallDensity;
+
+	private int nbSnakes;
+
+	// Surround the board with walls (otherwise snakes wrap around the edges)
+	private boolean border;
+
+	private long seed;
+
+
+	/**
+	 * Constructor: a bordered layout of the given size
+	 * @param sizeX Width of the board
+	 * @param sizeY Height of the board
+	 * @param wallDensity Fraction of inner cells that are walls, between 0 and 1
+	 * @param nbSnakes Number of snakes to place
+	 * @param seed Seed of the generator
+	 */
+	public LayoutGenerator(int sizeX, int sizeY, double wallDensity, int nbSnakes, long seed) {
+
+		if(sizeX < 3 || sizeY < 3) {
+			throw new IllegalArgumentException("Layout must be at least 3x3");
+		}
+		if(wallDensity < 0 || wallDensity >= 1) {
+			throw new IllegalArgumentException("Wall density must be in [0, 1[");
+		}
+
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.wallDensity = wallDensity;
+		this.nbSnakes = nbSnakes;
+		this.seed = seed;
+		this.border = true;
+	}
+
+
+	/**
+	 * Generates the lines of the layout.
+	 * Walls are dropped at random, then every free cell that cannot be reached from the
+	 * largest open area is walled up, so that no apple can spawn in a closed pocket.
+	 */
+	public ArrayList<String> generate() {
+
+		Random rand = new Random(seed);
+
+		char[][] grid = new char[sizeX][sizeY];
+
+		for(int x = 0; x < sizeX; x++) {
+			for(int y = 0; y < sizeY; y++) {
+
+				if(border && (x == 0 || y == 0 || x == sizeX - 1 || y == sizeY - 1)) {
+					grid[x][y] = WALL;
+				} else if(rand.nextDouble() < wallDensity) {
+					grid[x][y] = WALL;
+				} else {
+					grid[x][y] = EMPTY;
+				}
+			}
+		}
+
+		keepLargestArea(grid);
+
+		ArrayList<int[]> freeCells = new ArrayList<int[]>();
+		for(int x = 0; x < sizeX; x++) {
+			for(int y = 0; y < sizeY; y++) {
+				if(grid[x][y] == EMPTY) {
+					freeCells.add(new int[] {x, y});
+				}
+			}
+		}
+
+		if(freeCells.size() < nbSnakes + 1) {
+			throw new IllegalStateException("Not enough free cells for " + nbSnakes + " snakes and an apple");
+		}
+
+		// Partial shuffle: the first nbSnakes cells get the snakes, the next one the apple
+		for(int i = 0; i <= nbSnakes; i++) {
+			int j = i + rand.nextInt(freeCells.size() - i);
+			int[] tmp = freeCells.get(i);
+			freeCells.set(i, freeCells.get(j));
+			freeCells.set(j, tmp);
+		}
+
+		// InputMap numbers the snakes in reading order, so the placement order does not matter
+		for(int i = 0; i < nbSnakes; i++) {
+			grid[freeCells.get(i)[0]][freeCells.get(i)[1]] = SNAKE;
+		}
+		grid[freeCells.get(nbSnakes)[0]][freeCells.get(nbSnakes)[1]] = APPLE;
+
+		ArrayList<String> lines = new ArrayList<String>(sizeY);
+		StringBuilder sb = new StringBuilder(sizeX);
+		for(int y = 0; y < sizeY; y++) {
+			sb.setLength(0);
+			for(int x = 0; x < sizeX; x++) {
+				sb.append(grid[x][y]);
+			}
+			lines.add(sb.toString());
+		}
+
+		return lines;
+	}
+
+
+	/**
+	 * Generates the layout and loads it as an InputMap without writing any file
+	 */
+	public InputMap generateMap() throws Exception {
+		return new InputMap(getName(), generate());
+	}
+
+
+	/**
+	 * Writes the layout in a .lay file
+	 */
+	public void write(String filename) throws IOException {
+
+		PrintWriter writer = new PrintWriter(new FileWriter(filename));
+		for(String line : generate()) {
+			writer.println(line);
+		}
+		writer.close();
+	}
+
+
+	/**
+	 * Name describing the parameters of the layout, used as filename of the InputMap
+	 */
+	public String getName() {
+		return "generated_" + sizeX + "x" + sizeY + "_d" + wallDensity + "_s" + nbSnakes + (border ? "" : "_noWall") + "_seed" + seed;
+	}
+
+
+	// Flood fill (with wraparound, as in Snake.move) of every free area; only the largest one stays free
+	private void keepLargestArea(char[][] grid) {
+
+		int[] area = new int[sizeX * sizeY];
+		int[] queue = new int[sizeX * sizeY];
+
+		int bestArea = 0;
+		int bestSize = 0;
+		int nbAreas = 0;
+
+		for(int start = 0; start < sizeX * sizeY; start++) {
+
+			if(area[start] != 0 || grid[start % sizeX][start / sizeX] == WALL) {
+				continue;
+			}
+
+			nbAreas++;
+			area[start] = nbAreas;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = start;
+
+			while(head < tail) {
+
+				int cell = queue[head++];
+				int x = cell % sizeX;
+				int y = cell / sizeX;
+
+				int[] neighbours = {
+					((x + 1) % sizeX) + y * sizeX,
+					((x - 1 + sizeX) % sizeX) + y * sizeX,
+					x + ((y + 1) % sizeY) * sizeX,
+					x + ((y - 1 + sizeY) % sizeY) * sizeX
+				};
+
+				for(int next : neighbours) {
+					if(area[next] == 0 && grid[next % sizeX][next / sizeX] != WALL) {
+						area[next] = nbAreas;
+						queue[tail++] = next;
+					}
+				}
+			}
+
+			if(tail > bestSize) {
+				bestSize = tail;
+				bestArea = nbAreas;
+			}
+		}
+
+		for(int cell = 0; cell < sizeX * sizeY; cell++) {
+			if(area[cell] != bestArea) {
+				grid[cell % sizeX][cell / sizeX] = WALL;
+			}
+		}
+	}
+
+
+	public boolean isBorder() {
+		return border;
+	}
+
+	public void setBorder(boolean border) {
+		this.border = border;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+}
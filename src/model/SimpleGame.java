@@ -2,6 +2,8 @@ package model;
 
 public class SimpleGame extends Game{
 
+	private static final long serialVersionUID = 1L;
+
 	public SimpleGame(int maxTurn) {
 		super(maxTurn);
 
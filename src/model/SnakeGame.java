@@ -2,8 +2,17 @@ package model;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.SerializationUtils;
 
@@ -11,10 +20,15 @@ import agent.Snake;
 import factory.SnakeFactory;
 
 import item.Item;
+import metrics.Metrics;
+import replay.Replay;
+import strategy.Policy;
 import strategy.Strategy;
 import utils.AgentAction;
+import utils.DeathCause;
 import utils.FeaturesItem;
 import utils.FeaturesSnake;
+import utils.GameRandom;
 import utils.ItemType;
 import utils.Position;
 
@@ -22,6 +36,8 @@ import utils.Position;
 
 public class SnakeGame extends Game implements Serializable{
 
+	private static final long serialVersionUID = 1L;
+
 
 
 	private static final int REWARD_APPLE = 1;
@@ -36,6 +52,17 @@ public class SnakeGame extends Game implements Serializable{
 
 	double probSpecialItem = 0;
 
+	// Threads of the agents deciding in parallel, shared by all the games. Not bounded, since an agent
+	// that went over its time budget may still be running when the next turn asks for a decision.
+	private static final ExecutorService DECISION_POOL = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "snake-decision");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static final AtomicLong NEXT_GAME_ID = new AtomicLong();
+	private static final AtomicLong NEXT_HISTORY_ID = new AtomicLong();
+
 
 	private transient ArrayList<FeaturesSnake> start_snakes ;
 	private transient ArrayList<FeaturesItem> start_items ;
@@ -61,9 +88,34 @@ public class SnakeGame extends Game implements Serializable{
 	
 	private int[] tabTotalScoreSnakes;
 	
-	private transient Strategy[] strats;
+	// How and when each snake died (ALIVE and -1 while it is alive)
+	private DeathCause[] tabDeathCauseSnakes;
+	private int[] tabDeathTurnSnakes;
+	
+	// Handles of the strategies of the snakes in this game (mode, exploration, random numbers)
+	private transient Policy[] policies;
+	
+	// Records the actions of every turn when set
+	private transient Replay replay;
 	
 	boolean randomFirstApple;
+	
+	// Source of randomness of the game (apples, items, boxes), seeded for reproducible games
+	private GameRandom rand = new GameRandom(new Random().nextLong());
+	
+	// Seed of the game (negative = unseeded), also seeds the policies
+	private long seed = -1;
+	
+	// Identifier of the game, kept by its copies (strategies use it to recognize the game behind a copy)
+	private long gameId = NEXT_GAME_ID.incrementAndGet();
+	// Identifier of the sequence of turns leading to the state, kept by the copies of a turn; a new one
+	// when the state no longer follows on from the previous turns (restoreState, a copy for simulation)
+	private long historyId = NEXT_HISTORY_ID.incrementAndGet();
+	
+	// Time budget of each agent when they decide in parallel, in milliseconds (negative = one after
+	// the other on the game itself, 0 = in parallel without limit). Not transient: the copies of the game
+	// would get 0 instead of -1
+	private long decisionTimeout = -1;
 
 	public SnakeGame(int maxTurn, InputMap inputMap, boolean randomFirstApple) {
 
@@ -80,6 +132,7 @@ public class SnakeGame extends Game implements Serializable{
 	public void initializeGame() {
 
 		
+		this.historyId = NEXT_HISTORY_ID.incrementAndGet();
 		this.walls = inputMap.get_walls().clone();
 
 		String levelAISnake = "Advanced";
@@ -100,7 +153,10 @@ public class SnakeGame extends Game implements Serializable{
 		
 		for(FeaturesSnake featuresSnake : start_snakes) {
 			snakes.add(snakeFactory.createSnake(featuresSnake, levelAISnake, id));
-			snakes.get(id).setStrategy(strats[id]);	
+			snakes.get(id).setPolicy(policies[id]);
+			if(seed >= 0) {
+				policies[id].setSeed(seed * 31 + id);
+			}
 			id++;
 		}
 		
@@ -118,21 +174,99 @@ public class SnakeGame extends Game implements Serializable{
 		
 		tabCurrentRewardSnakes = new int[snakes.size()];
 		
+		tabDeathCauseSnakes = new DeathCause[snakes.size()];
+		tabDeathTurnSnakes = new int[snakes.size()];
+		for(int i = 0; i < snakes.size(); i++) {
+			tabDeathCauseSnakes[i] = DeathCause.ALIVE;
+			tabDeathTurnSnakes[i] = -1;
+		}
+		
 	}
 	
 	
 
-	public void setStrategies(Strategy[] strats) {
+	/**
+	 * Seeds the randomness of the game; call before init() so that the first apple is reproducible too
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+		this.rand = new GameRandom(seed);
+	}
+
+	/**
+	 * Starts the random events to come (apples, items) over from a new seed, keeping the game as it is:
+	 * a simulation restored from a snapshot draws another future than the real game
+	 */
+	public void reseedRandom(long seed) {
+		rand.setSeed(seed);
+	}
+
+	/**
+	 * Makes the agents decide in parallel on a copy of the state of each turn
+	 * @param timeoutMillis Time budget of each agent per turn (0 = no limit, negative = back to sequential decisions)
+	 */
+	public void setDecisionTimeout(long timeoutMillis) {
+		this.decisionTimeout = timeoutMillis;
+	}
+	
+	/**
+	 * Identifier of the game, the same for all its copies
+	 */
+	public long getGameId() {
+		return gameId;
+	}
+
+	/**
+	 * Identifier of the history of the state: two states of a game with the same history and turns t and
+	 * t + 1 are two consecutive turns of the same play (see LocalView)
+	 */
+	public long getHistoryId() {
+		return historyId;
+	}
+
+	/**
+	 * Records the game in a replay; the game must be seeded with the seed of the replay before init()
+	 */
+	public void setReplay(Replay replay) {
+		this.replay = replay;
+	}
+	
+	/**
+	 * Sets back the fields that are not serialized, after a copy of the game has been deserialized
+	 */
+	public void restoreTransientState(InputMap inputMap, Policy[] policies) {
 		
-		this.strats = strats;
+		this.inputMap = inputMap;
+		this.policies = policies;
+		this.start_snakes = inputMap.getStart_snakes();
+		this.start_items = inputMap.getStart_items();
+		
+		for(Snake snake : snakes) {
+			snake.setPolicy(policies[snake.getId()]);
+			snake.setColorSnake(start_snakes.get(snake.getId()).getColorSnake());
+		}
+	}
+
+	/**
+	 * Sets the strategy of each snake, each played in the current mode of the strategy (see Strategy.setModeTrain)
+	 */
+	public void setStrategies(Strategy[] strats) {
 		
+		this.policies = Policy.of(strats);
+	}
 
+	/**
+	 * Sets the policy handle of each snake; the handles belong to this game and must not be shared with another one
+	 */
+	public void setPolicies(Policy[] policies) {
 		
+		this.policies = policies;
 	}
 
 	@Override
 	public void takeTurn() {
 
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
 
 		SnakeGame state = SerializationUtils.clone( this);
 		
@@ -141,23 +275,124 @@ public class SnakeGame extends Game implements Serializable{
 		}
 		
 		
-		ArrayList<AgentAction> actions = new ArrayList<AgentAction>(); 
+		ArrayList<AgentAction> actions;
 		
+		if(decisionTimeout >= 0) {
+			
+			actions = decideConcurrently(state);
+			
+		} else {
+			
+			actions = new ArrayList<AgentAction>(); 
+			
+			for(int i = 0; i < snakes.size(); i++) {
+				
+				if(snakes.get(i).isDead()) {
+					actions.add(null);
+				} else {
+					actions.add(snakes.get(i).play(this));
+				}
+				
+				
+			}
+		}
+		
+		if(replay != null) {
+			replay.addTurn(actions);
+		}
+
+		resolveTurn(actions);
+
+
+		for(int i = 0; i < actions.size(); i++) {
+			
+			if(actions.get(i) != null) {
+				
+				snakes.get(i).update(state, actions.get(i), this, tabCurrentRewardSnakes[i]);
+				
+			}
+			
+		}
+
+			
+		//removeSnake();
+		
+		updateSnakeTimers();
+
+		if(Metrics.ENABLED) {
+			Metrics.TURNS.increment();
+			Metrics.TAKE_TURN.record(System.nanoTime() - start);
+		}
+			
+	}
+
+	/**
+	 * Asks every living agent for its action at the same time, on the copy of the state of the turn,
+	 * so that an agent still thinking after its time budget cannot see the game change under it.
+	 * An agent over its budget keeps its last move. The actions are collected by snake index and
+	 * resolved together, so the outcome does not depend on the order in which the agents finish.
+	 */
+	private ArrayList<AgentAction> decideConcurrently(SnakeGame view) {
+		
+		view.restoreTransientState(inputMap, policies);
+		
+		ArrayList<Future<AgentAction>> decisions = new ArrayList<Future<AgentAction>>();
+		for(int i = 0; i < snakes.size(); i++) {
+			Snake snake = view.getSnakes().get(i);
+			decisions.add(snake.isDead() ? null : DECISION_POOL.submit(() -> snake.play(view)));
+		}
+		
+		long deadline = System.nanoTime() + decisionTimeout * 1_000_000L;
+		
+		ArrayList<AgentAction> actions = new ArrayList<AgentAction>();
 		for(int i = 0; i < snakes.size(); i++) {
 			
-			if(snakes.get(i).isDead()) {
+			Future<AgentAction> decision = decisions.get(i);
+			if(decision == null) {
 				actions.add(null);
-			} else {
-				actions.add(snakes.get(i).play(this));
+				continue;
 			}
 			
-			
+			try {
+				if(decisionTimeout == 0) {
+					actions.add(decision.get());
+				} else {
+					actions.add(decision.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+				}
+			} catch (TimeoutException e) {
+				decision.cancel(true);
+				replacePolicy(i);
+				actions.add(snakes.get(i).getLastMove());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				decision.cancel(true);
+				replacePolicy(i);
+				actions.add(snakes.get(i).getLastMove());
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Agent " + i + " failed to decide", e.getCause());
+			}
 		}
+		
+		return actions;
+	}
+
+	// Gives the snake a new handle of its strategy: its agent, over its budget, may still be running with
+	// the old one (its random numbers, its trace), which is left to it. The state kept for the game starts over.
+	private void replacePolicy(int i) {
+		
+		Policy old = policies[i];
+		Policy fresh = old.getStrategy().newPolicy(old.isModeTrain());
+		fresh.setSeed(old.getRandom().nextLong());
+		policies[i] = fresh;
+		snakes.get(i).setPolicy(fresh);
+	}
 
+	// Moves the snakes with the given actions (null for a dead snake) and applies the rules of the game
+	private void resolveTurn(List<AgentAction> actions) {
 		
 		for(int i = 0; i < actions.size(); i++) {
 
-			if(actions.get(i) != null) {
+			if(actions.get(i) != null && !snakes.get(i).isDead()) {
 				if(isLegalMove(snakes.get(i), actions.get(i))) {
 					snakes.get(i).move(actions.get(i), this);
 				} else {
@@ -179,8 +414,6 @@ public class SnakeGame extends Game implements Serializable{
 
 			addRandomApple();
 
-			Random rand = new Random();
-
 			double r = rand.nextDouble();
 
 			if(r < probSpecialItem) {
@@ -189,25 +422,159 @@ public class SnakeGame extends Game implements Serializable{
 			}
 
 		}
-
-
-		for(int i = 0; i < actions.size(); i++) {
+		
+	}
+	
+	
+	/**
+	 * Plays one turn with the given actions (one per snake, ignored for dead snakes) without asking the
+	 * strategies, learning, recording or notifying the views: meant for lookahead on a copy of the game.
+	 */
+	public void simulateStep(AgentAction... actions) {
+		
+		for(int i = 0; i < tabCurrentRewardSnakes.length; i++) {	
+			tabCurrentRewardSnakes[i] = 0;
+		}
+		
+		turn++;
+		resolveTurn(Arrays.asList(actions));
+		updateSnakeTimers();
+	}
+	
+	
+	/**
+	 * True when step() would end the game
+	 */
+	public boolean isFinished() {
+		return !gameContinue() || turn >= maxTurn;
+	}
+	
+	
+	/**
+	 * Deep copy of the game for simulations: the strategies and the map are shared, nothing is recorded.
+	 * Costly (serialization), make it once then use saveState/restoreState to go back in the copy.
+	 */
+	public SnakeGame copyForSimulation() {
+		
+		SnakeGame copy = SerializationUtils.clone(this);
+		copy.restoreTransientState(inputMap, policies);
+		copy.historyId = NEXT_HISTORY_ID.incrementAndGet();
+		return copy;
+	}
+	
+	
+	/**
+	 * Copies the mutable state of the game in the snapshot (walls and map are not copied)
+	 */
+	public void saveState(GameSnapshot snapshot) {
+		
+		int nbCells = 0;
+		for(Snake snake : snakes) {
+			nbCells += snake.getSize();
+		}
+		snapshot.ensureCapacity(snakes.size(), nbCells, items.size());
+		
+		snapshot.turn = turn;
+		snapshot.isRunning = isRunning;
+		snapshot.randomState = rand.getState();
+		
+		snapshot.nbSnakes = snakes.size();
+		int cell = 0;
+		for(int s = 0; s < snakes.size(); s++) {
 			
-			if(actions.get(i) != null) {
-				
-				snakes.get(i).update(state, actions.get(i), this, tabCurrentRewardSnakes[i]);
-				
+			Snake snake = snakes.get(s);
+			snapshot.positionStart[s] = cell;
+			snapshot.snakeSize[s] = snake.getSize();
+			for(Position p : snake.getPositions()) {
+				snapshot.positionsX[cell] = p.getX();
+				snapshot.positionsY[cell] = p.getY();
+				cell++;
 			}
+			snapshot.lastMove[s] = snake.getLastMove().ordinal();
+			snapshot.invincibleTimer[s] = snake.getInvincibleTimer();
+			snapshot.sickTimer[s] = snake.getSickTimer();
+			snapshot.oldTailX[s] = snake.getOldTailX();
+			snapshot.oldTailY[s] = snake.getOldTailY();
+			snapshot.isDead[s] = snake.isDead();
 			
+			snapshot.currentReward[s] = tabCurrentRewardSnakes[s];
+			snapshot.totalScore[s] = tabTotalScoreSnakes[s];
+			snapshot.deathCause[s] = tabDeathCauseSnakes[s].ordinal();
+			snapshot.deathTurn[s] = tabDeathTurnSnakes[s];
 		}
-
-			
-		//removeSnake();
 		
-		updateSnakeTimers();
-
+		snapshot.nbItems = items.size();
+		for(int i = 0; i < items.size(); i++) {
+			Item item = items.get(i);
+			snapshot.itemX[i] = item.getX();
+			snapshot.itemY[i] = item.getY();
+			snapshot.itemType[i] = item.getItemType().ordinal();
+		}
+	}
+	
+	
+	/**
+	 * Puts the game back in the state saved in the snapshot (taken on this game or on a copy of it).
+	 * The existing Position and Item objects are reused, only a longer body or extra items allocate.
+	 */
+	public void restoreState(GameSnapshot snapshot) {
+		
+		turn = snapshot.turn;
+		isRunning = snapshot.isRunning;
+		rand.setState(snapshot.randomState);
+		historyId = NEXT_HISTORY_ID.incrementAndGet();
+		
+		AgentAction[] agentActions = AgentAction.values();
+		DeathCause[] deathCauses = DeathCause.values();
+		
+		for(int s = 0; s < snapshot.nbSnakes; s++) {
 			
+			Snake snake = snakes.get(s);
+			ArrayList<Position> positions = snake.getPositions();
+			int size = snapshot.snakeSize[s];
+			
+			while(positions.size() > size) {
+				positions.remove(positions.size() - 1);
+			}
+			int start = snapshot.positionStart[s];
+			for(int i = 0; i < size; i++) {
+				if(i < positions.size()) {
+					positions.get(i).setX(snapshot.positionsX[start + i]);
+					positions.get(i).setY(snapshot.positionsY[start + i]);
+				} else {
+					positions.add(new Position(snapshot.positionsX[start + i], snapshot.positionsY[start + i]));
+				}
+			}
+			
+			snake.setLastMove(agentActions[snapshot.lastMove[s]]);
+			snake.setInvincibleTimer(snapshot.invincibleTimer[s]);
+			snake.setSickTimer(snapshot.sickTimer[s]);
+			snake.setOldTail(snapshot.oldTailX[s], snapshot.oldTailY[s]);
+			snake.setDead(snapshot.isDead[s]);
+			
+			tabCurrentRewardSnakes[s] = snapshot.currentReward[s];
+			tabTotalScoreSnakes[s] = snapshot.totalScore[s];
+			tabDeathCauseSnakes[s] = deathCauses[snapshot.deathCause[s]];
+			tabDeathTurnSnakes[s] = snapshot.deathTurn[s];
+		}
+		
+		ItemType[] itemTypes = ItemType.values();
+		
+		while(items.size() > snapshot.nbItems) {
+			items.remove(items.size() - 1);
+		}
+		for(int i = 0; i < snapshot.nbItems; i++) {
+			if(i < items.size()) {
+				Item item = items.get(i);
+				item.setX(snapshot.itemX[i]);
+				item.setY(snapshot.itemY[i]);
+				item.setItemType(itemTypes[snapshot.itemType[i]]);
+			} else {
+				items.add(new Item(snapshot.itemX[i], snapshot.itemY[i], itemTypes[snapshot.itemType[i]]));
+			}
+		}
 	}
+	
 
 	public boolean isLegalMove(Snake snake, AgentAction action) {
 		
@@ -247,6 +614,10 @@ public class SnakeGame extends Game implements Serializable{
 	@Override
 	public void gameOver() {
 		//System.out.println("Game over");
+		
+		if(Metrics.ENABLED) {
+			Metrics.GAMES.increment();
+		}
 
 	}
 
@@ -258,9 +629,6 @@ public class SnakeGame extends Game implements Serializable{
 		boolean notPlaced = true;
 
 		while(notPlaced) {
-			Random rand = new Random();
-
-
 			int x = rand.nextInt(this.inputMap.getSizeX());
 			int y = rand.nextInt(this.inputMap.getSizeY());
 
@@ -278,8 +646,6 @@ public class SnakeGame extends Game implements Serializable{
 
 	public void addRandomItem() {
 
-		Random rand = new Random();
-
 		int r = rand.nextInt(3);
 
 		ItemType itemType = null;
@@ -380,7 +746,6 @@ public class SnakeGame extends Game implements Serializable{
 						}
 
 						if(item.getItemType() == ItemType.BOX) {
-							Random rand = new Random();
 							double r = rand.nextDouble();
 							if(r < 0.5) {
 								snake.setInvincibleTimer(this.timeInvincible);
@@ -433,6 +798,7 @@ public class SnakeGame extends Game implements Serializable{
 
 
 		boolean[] tabEaten = new boolean[snakes.size()];
+		DeathCause[] tabCause = new DeathCause[snakes.size()];
 		
 				
 		for(int s = 0; s < snakes.size(); s++) {
@@ -458,6 +824,7 @@ public class SnakeGame extends Game implements Serializable{
 							if( x2 == snake1.getPositions().get(i).getX() &&  y2 == snake1.getPositions().get(i).getY() ) {
 								
 								tabEaten[s] = true;
+								tabCause[s] = DeathCause.OTHER_SNAKE;
 								
 								tabCurrentRewardSnakes[snake1.getId()] += this.REWARD_DEAD;
 								//tabTotalScoreSnakes[snake1.getId()] += this.REWARD_DEAD;
@@ -481,6 +848,10 @@ public class SnakeGame extends Game implements Serializable{
 							if( x2 == snake1.getPositions().get(i).getX() &&  y2 == snake1.getPositions().get(i).getY() ) {
 
 								tabEaten[s] = true;
+								// Being eaten by an other snake takes precedence
+								if(tabCause[s] == null) {
+									tabCause[s] = DeathCause.SELF;
+								}
 								tabCurrentRewardSnakes[snake1.getId()] += this.REWARD_DEAD;	
 								//tabTotalScoreSnakes[snake1.getId()] += this.REWARD_DEAD;
 
@@ -504,6 +875,7 @@ public class SnakeGame extends Game implements Serializable{
 			
 			if(tabEaten[s]) {
 				
+				recordDeath(s, tabCause[s]);
 				snakes.get(s).setDead(true);
 			}
 			
@@ -524,7 +896,7 @@ public class SnakeGame extends Game implements Serializable{
 	
 					tabCurrentRewardSnakes[snake1.getId()] += this.REWARD_DEAD;
 					
-					
+					recordDeath(snake1.getId(), DeathCause.WALL);
 					snake1.setDead(true);
 	
 				}
@@ -535,6 +907,16 @@ public class SnakeGame extends Game implements Serializable{
 	}
 
 
+	// Keeps the first cause of death of a snake (a dead snake left on a wall is hit again every turn)
+	private void recordDeath(int idSnake, DeathCause cause) {
+
+		if(tabDeathCauseSnakes[idSnake] == DeathCause.ALIVE) {
+			tabDeathCauseSnakes[idSnake] = cause;
+			tabDeathTurnSnakes[idSnake] = turn;
+		}
+	}
+
+
 	public void removeSnake() {
 
 		ListIterator<Snake> iterSnake = snakes.listIterator();
@@ -631,5 +1013,13 @@ public class SnakeGame extends Game implements Serializable{
 		return tabTotalScoreSnakes;
 	}
 	
+	public DeathCause[] getTabDeathCauseSnakes() {
+		return tabDeathCauseSnakes;
+	}
+	
+	public int[] getTabDeathTurnSnakes() {
+		return tabDeathTurnSnakes;
+	}
+	
 	
 }
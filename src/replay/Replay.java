@@ -0,0 +1,183 @@
+package replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.InputMap;
+import utils.AgentAction;
+
+
+// Compact record of a game: since SnakeGame draws all its randomness from its seed, the layout,
+// the seed and the action of each snake at each turn are enough to re-simulate the game exactly.
+// The lines of the layout are stored with its name (from version 2), so that a game played on a generated
+// layout, or on a layout file changed since, can still be replayed.
+// Actions are packed on 2 bits per snake per turn (a dead snake's slot is left at 0 and ignored).
+public class Replay {
+
+	private static final int MAGIC = 0x534E4B52; // "SNKR"
+	private static final int VERSION = 2;
+
+	private static final int BITS_PER_ACTION = 2;
+
+	private String layout;
+	// Lines of the layout (null in a version 1 replay: the layout is read from its file)
+	private List<String> layoutLines;
+	private long seed;
+	private boolean randomFirstApple;
+	private int maxTurn;
+	private int nbSnakes;
+
+	private int nbTurns;
+	private long[] actions = new long[16];
+
+
+	/**
+	 * Constructor of an empty replay, to be filled while the game runs
+	 * @param layout Layout of the game (the game must have been seeded with this seed before init())
+	 */
+	public Replay(InputMap layout, long seed, boolean randomFirstApple, int maxTurn, int nbSnakes) {
+		this(layout.getFilename(), layout.getLines(), seed, randomFirstApple, maxTurn, nbSnakes);
+	}
+
+	private Replay(String layout, List<String> layoutLines, long seed, boolean randomFirstApple, int maxTurn, int nbSnakes) {
+		this.layout = layout;
+		this.layoutLines = layoutLines;
+		this.seed = seed;
+		this.randomFirstApple = randomFirstApple;
+		this.maxTurn = maxTurn;
+		this.nbSnakes = nbSnakes;
+	}
+
+
+	/**
+	 * Appends the actions chosen during a turn (null for a dead snake)
+	 */
+	public void addTurn(List<AgentAction> turnActions) {
+
+		long needed = ((long) (nbTurns + 1) * nbSnakes * BITS_PER_ACTION + 63) / 64;
+		if(needed > actions.length) {
+			actions = Arrays.copyOf(actions, Math.max((int) needed, actions.length * 2));
+		}
+
+		for(int s = 0; s < nbSnakes; s++) {
+			AgentAction action = turnActions.get(s);
+			if(action != null) {
+				long bit = ((long) nbTurns * nbSnakes + s) * BITS_PER_ACTION;
+				actions[(int) (bit >>> 6)] |= ((long) action.ordinal()) << (bit & 63);
+			}
+		}
+		nbTurns++;
+	}
+
+
+	/**
+	 * Action of a snake at a turn (turns numbered from 0)
+	 */
+	public AgentAction getAction(int turn, int snake) {
+
+		long bit = ((long) turn * nbSnakes + snake) * BITS_PER_ACTION;
+		int ordinal = (int) (actions[(int) (bit >>> 6)] >>> (bit & 63)) & ((1 << BITS_PER_ACTION) - 1);
+		return AgentAction.values()[ordinal];
+	}
+
+
+	public void write(String filename) throws IOException {
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(layout);
+		out.writeInt(layoutLines.size());
+		for(String line : layoutLines) {
+			out.writeUTF(line);
+		}
+		out.writeLong(seed);
+		out.writeBoolean(randomFirstApple);
+		out.writeInt(maxTurn);
+		out.writeInt(nbSnakes);
+		out.writeInt(nbTurns);
+
+		int nbLongs = (int) (((long) nbTurns * nbSnakes * BITS_PER_ACTION + 63) / 64);
+		for(int i = 0; i < nbLongs; i++) {
+			out.writeLong(actions[i]);
+		}
+		out.close();
+	}
+
+
+	public static Replay read(String filename) throws IOException {
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+		try {
+			if(in.readInt() != MAGIC) {
+				throw new IOException(filename + " is not a replay");
+			}
+			int version = in.readInt();
+			if(version != 1 && version != VERSION) {
+				throw new IOException("Unsupported replay version " + version);
+			}
+
+			String layout = in.readUTF();
+			List<String> layoutLines = null;
+			if(version >= 2) {
+				int nbLines = in.readInt();
+				layoutLines = new ArrayList<String>(nbLines);
+				for(int i = 0; i < nbLines; i++) {
+					layoutLines.add(in.readUTF());
+				}
+			}
+			Replay replay = new Replay(layout, layoutLines, in.readLong(), in.readBoolean(), in.readInt(), in.readInt());
+			replay.nbTurns = in.readInt();
+
+			int nbLongs = (int) (((long) replay.nbTurns * replay.nbSnakes * BITS_PER_ACTION + 63) / 64);
+			replay.actions = new long[Math.max(1, nbLongs)];
+			for(int i = 0; i < nbLongs; i++) {
+				replay.actions[i] = in.readLong();
+			}
+			return replay;
+		} finally {
+			in.close();
+		}
+	}
+
+
+	public String getLayout() {
+		return layout;
+	}
+
+	/**
+	 * The map of the game: built from the stored lines, or read from the layout file for an old replay
+	 */
+	public InputMap loadLayout() throws Exception {
+		return layoutLines != null ? new InputMap(layout, layoutLines) : new InputMap(layout);
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public boolean isRandomFirstApple() {
+		return randomFirstApple;
+	}
+
+	public int getMaxTurn() {
+		return maxTurn;
+	}
+
+	public int getNbSnakes() {
+		return nbSnakes;
+	}
+
+	public int getNbTurns() {
+		return nbTurns;
+	}
+
+}
@@ -0,0 +1,101 @@
+package replay;
+
+import java.util.ArrayList;
+
+import model.GameSnapshot;
+import model.InputMap;
+import model.SnakeGame;
+import strategy.Strategy;
+
+
+// Re-simulates a replay. The whole game is played once at loading time and a keyframe (snapshot
+// of the game) is kept every keyframeInterval turns, so reaching any turn costs at most keyframeInterval steps.
+public class ReplayPlayer {
+
+	private Replay replay;
+	private InputMap inputMap;
+	private Strategy[] strats;
+	private int keyframeInterval;
+
+	private ArrayList<GameSnapshot> keyframes = new ArrayList<GameSnapshot>();
+
+	// Game put in the requested state by seek()
+	private SnakeGame snakeGame;
+
+
+	public ReplayPlayer(Replay replay, int keyframeInterval) throws Exception {
+
+		this.replay = replay;
+		this.keyframeInterval = keyframeInterval;
+		this.inputMap = replay.loadLayout();
+
+		this.strats = new Strategy[replay.getNbSnakes()];
+		for(int j = 0; j < strats.length; j++) {
+			strats[j] = new ReplayStrategy(replay);
+		}
+
+		snakeGame = new SnakeGame(replay.getMaxTurn(), inputMap, replay.isRandomFirstApple());
+		snakeGame.setSeed(replay.getSeed());
+		snakeGame.setStrategies(strats);
+		snakeGame.init();
+		snakeGame.setTime(0);
+
+		keyframes.add(keyframe());
+
+		while(snakeGame.getTurn() < replay.getNbTurns()) {
+			stepReplay();
+			if(snakeGame.getTurn() % keyframeInterval == 0) {
+				keyframes.add(keyframe());
+			}
+		}
+	}
+
+
+	private GameSnapshot keyframe() {
+		GameSnapshot snapshot = new GameSnapshot();
+		snakeGame.saveState(snapshot);
+		return snapshot;
+	}
+
+
+	/**
+	 * Puts the game of the player in the state it had at the end of the given turn (0 = initial state)
+	 * and returns it; the same game object is returned (and modified) by every call
+	 */
+	public SnakeGame seek(int turn) {
+
+		turn = Math.max(0, Math.min(turn, replay.getNbTurns()));
+
+		int keyframe = Math.min(turn / keyframeInterval, keyframes.size() - 1);
+
+		snakeGame.restoreState(keyframes.get(keyframe));
+
+		while(snakeGame.getTurn() < turn) {
+			stepReplay();
+		}
+
+		return snakeGame;
+	}
+
+
+	// Plays the next recorded turn; the game no longer following the record (another layout, other rules)
+	// shows as a game that ends before its last recorded turn
+	private void stepReplay() {
+
+		int turn = snakeGame.getTurn();
+		if(!snakeGame.gameContinue() || turn >= snakeGame.getMaxTurn()) {
+			throw new IllegalStateException("Replay diverged: the game ended at turn " + turn + " of " + replay.getNbTurns());
+		}
+		snakeGame.step();
+	}
+
+
+	public Replay getReplay() {
+		return replay;
+	}
+
+	public InputMap getInputMap() {
+		return inputMap;
+	}
+
+}
@@ -0,0 +1,30 @@
+package replay;
+
+import model.SnakeGame;
+import strategy.Strategy;
+import utils.AgentAction;
+
+
+// Plays back the actions recorded in a replay; never learns
+public class ReplayStrategy extends Strategy {
+
+	private static final long serialVersionUID = 1L;
+
+	private Replay replay;
+
+	public ReplayStrategy(Replay replay) {
+		this.replay = replay;
+	}
+
+	@Override
+	public AgentAction chooseAction(int idxSnake, SnakeGame snakeGame) {
+
+		// Game.step() counts the turn before playing it, the replay numbers turns from 0
+		return replay.getAction(snakeGame.getTurn() - 1, idxSnake);
+	}
+
+	@Override
+	public void update(int idx, SnakeGame state, AgentAction action, SnakeGame nextState, int reward, boolean isFinalState) {
+	}
+
+}
@@ -4,27 +4,47 @@
 // Action selection is epsilon-greedy, and weights are updated using the TD error.
 // Features include proximity to items, distance to items, and self-collision avoidance.
 // All movement simulations are performed on copies to avoid modifying the real game state.
+// The weights are shared without locks by all the games playing the strategy (Hogwild style updates).
 package strategy;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import agent.Snake;
 import item.Item;
 import model.SnakeGame;
 import utils.AgentAction;
 import utils.ItemType;
+import utils.LocalView;
 import utils.Position;
+import utils.ReachableArea;
 
 public class ApproximateQLearning_solo extends Strategy {
+
+    private static final long serialVersionUID = 1L;
+
     // Q-learning with linear function approximation for Snake
     
     // Weights for each feature (learned parameters)
     private double[] weights;
     // Number of features in the feature vector
     private int NUM_FEATURES_MAX;
+    // Flood fill for the room feature, one per thread since games run in parallel
+    private static final ThreadLocal<ReachableArea> REACHABLE_AREA = ThreadLocal.withInitial(() -> new ReachableArea(true));
+
+    // Copy of the weights the targets bootstrap from (null = bootstrap from the weights being learned),
+    // replaced by a fresh copy every targetUpdateEvery steps; a copy is never written once published,
+    // so each update reads one consistent version while the other games keep learning
+    private volatile double[] targetWeights;
+    private int targetUpdateEvery;
+    // Step at which the target copy is due to be refreshed
+    private final AtomicLong targetRefreshStep = new AtomicLong();
+    // Double Q-learning: the learned weights pick the best next action, the target copy values it
+    private boolean doubleQ;
     
     /**
      * Constructor: initializes Q-learning parameters and random weights
@@ -35,7 +55,7 @@ public class ApproximateQLearning_solo extends Strategy {
      */
     public ApproximateQLearning_solo(int nbActions, double epsilon, double gamma, double alpha) {    
         super(nbActions, epsilon, gamma, alpha);
-        NUM_FEATURES_MAX = 4;
+        NUM_FEATURES_MAX = 5;
         weights = new double[NUM_FEATURES_MAX];
         Random rand = new Random();
         for (int i = 0; i < NUM_FEATURES_MAX; i++) {
@@ -43,6 +63,30 @@ public class ApproximateQLearning_solo extends Strategy {
         }
     }
     
+    /**
+     * Makes the targets bootstrap from a copy of the weights refreshed every updateEvery training steps
+     * @param updateEvery Steps between two copies (0 = bootstrap from the weights being learned)
+     * @param doubleQ True to pick the best next action with the learned weights and value it with the copy
+     */
+    public void setTargetWeights(int updateEvery, boolean doubleQ) {
+        if (doubleQ && updateEvery <= 0) {
+            throw new IllegalArgumentException("Double Q-learning needs a target copy of the weights (updateEvery > 0)");
+        }
+        this.targetUpdateEvery = updateEvery;
+        this.doubleQ = doubleQ;
+        this.targetWeights = updateEvery > 0 ? weights.clone() : null;
+        this.targetRefreshStep.set(getSteps() + updateEvery);
+    }
+
+    // Publishes a new copy of the weights when it is due, from a single game
+    private void refreshTargetWeights() {
+        long due = targetRefreshStep.get();
+        long steps = getSteps();
+        if (steps >= due && targetRefreshStep.compareAndSet(due, steps + targetUpdateEvery)) {
+            targetWeights = weights.clone();
+        }
+    }
+
     /**
      * Computes the feature vector for a given state and action.
      * Features:
@@ -50,22 +94,21 @@ public class ApproximateQLearning_solo extends Strategy {
      * 1: Is next to item
      * 2: Distance to closest item (normalized)
      * 3: Is not next to own body
+     * 4: Room left after the move: reachable cells over the size of the snake, capped at 1
+     *    (absent from a strategy saved with 4 features: its NUM_FEATURES_MAX is read back with its weights)
      */
-    private double[] getFeatures(int idxSnake, SnakeGame state, AgentAction moveAction) {
+    public double[] getFeatures(int idxSnake, SnakeGame state, AgentAction moveAction) {
         double[] features = new double[NUM_FEATURES_MAX];
         Snake snake = state.getSnakes().get(idxSnake);
-        Position head = snake.getPositions().get(0);
-        ArrayList<Double> featuresList = new ArrayList<>();
+        ArrayList<Position> body = snake.getPositions();
         ArrayList<Item> items = state.getItems();
 
         Position nextHead = getNextPosition(idxSnake, moveAction, state);
-        // Copy the snake's body to simulate movement without affecting the real game state
-        ArrayList<Position> nextSnakeBody = new ArrayList<>();
-        for (Position p : snake.getPositions()) {
-            nextSnakeBody.add(new Position(p.getX(), p.getY()));
-        }
+        // The body around the next head is read on the shared view of the board instead of a copy of the body
+        LocalView view = LocalView.forThread();
+        view.sync(state);
 
-        // Simulate movement: update the body and head positions
+        // Eating an apple keeps the tail in place
         boolean onApple = false;
         for (Item item : items) {
             if (item.getItemType() == ItemType.APPLE) {
@@ -75,26 +118,27 @@ public class ApproximateQLearning_solo extends Strategy {
                 }
             }
         }
-        if(!onApple) {
-            // Move body segments
-            for (int i=0;i<nextSnakeBody.size()-1;i++) {
-                nextSnakeBody.get(nextSnakeBody.size()-1-i).setX(nextSnakeBody.get(nextSnakeBody.size()-2-i).getX());
-                nextSnakeBody.get(nextSnakeBody.size()-1-i).setY(nextSnakeBody.get(nextSnakeBody.size()-2-i).getY());
-            }
-        }
-        // Move head
-        nextSnakeBody.get(0).setX(nextHead.getX());
-        nextSnakeBody.get(0).setY(nextHead.getY());
 
         // Feature 0: Bias (always 1)
         features[0] = 1.0; 
-        // Feature 1: Is next to item
+        // Feature 1: Is next to item (one per item, as several items may share a cell)
         for (Item item : items) {
             Position itemPo = new Position(item.getX(), item.getY());
             if(isNextTo(nextHead,itemPo, state)) {
                 features[1] += 1.0;
             }
         }
+        // Feature 3: Is not next to own body, from the third segment of the moved body on: all the
+        // segments but the head and the tail, or but the head and the neck when the tail stays
+        Position skipped = onApple ? body.get(Math.min(1, body.size() - 1)) : body.get(body.size() - 1);
+        boolean nextToBody = false;
+        for (int k = 0; k < 4; k++) {
+            int x = Math.floorMod(nextHead.getX() + (k == 0 ? 1 : k == 1 ? -1 : 0), state.getSizeX());
+            int y = Math.floorMod(nextHead.getY() + (k == 2 ? 1 : k == 3 ? -1 : 0), state.getSizeY());
+            int segments = view.getBody(idxSnake, x, y) - (isAt(body.get(0), x, y) ? 1 : 0) - (isAt(skipped, x, y) ? 1 : 0);
+            nextToBody |= segments > 0;
+        }
+        features[3] = snake.getSize() > 2 && nextToBody ? 0.0 : 1.0;
 
         // Feature 2: Distance to closest item (normalized)
         double minDist = Double.MAX_VALUE;
@@ -103,17 +147,12 @@ public class ApproximateQLearning_solo extends Strategy {
             minDist = Math.min(minDist, dist);
         }
         features[2] = items.isEmpty() ? 0.0 : (1.0 - Math.min(1.0, minDist / (state.getSizeX() + state.getSizeY())));
-        // Feature 3: Is not next to own body
-        boolean nextToBody = false;
-        if (snake.getSize() > 2) {
-            for (int i=2;i<nextSnakeBody.size();i++) {
-                if(isNextTo(nextHead,nextSnakeBody.get(i), state)) {
-                    nextToBody = true;
-                    break;
-                }
-            }
+
+        // Feature 4: Room left after the move (dead-end pockets get a low value)
+        if (NUM_FEATURES_MAX > 4) {
+            int limit = snake.getSize() + 1;
+            features[4] = (double) REACHABLE_AREA.get().count(state, idxSnake, moveAction, limit) / limit;
         }
-        features[3] = nextToBody ? 0.0 : 1.0;
 
         return features;
     }
@@ -202,16 +241,28 @@ public class ApproximateQLearning_solo extends Strategy {
     }
     
     /**
-     * Chooses an action using epsilon-greedy policy:
+     * Chooses an action using epsilon-greedy policy, in the current mode of the strategy
+     */
+    @Override
+    public AgentAction chooseAction(int idxSnake, SnakeGame state) {
+        return chooseAction(newPolicy(isModeTrain()), idxSnake, state);
+    }
+
+    /**
+     * Chooses an action using epsilon-greedy policy, with the exploration rate and the random numbers of the policy:
      * - With probability epsilon, selects a random legal action
      * - Otherwise, selects the action with the highest Q-value
      */
     @Override
-    public AgentAction chooseAction(int idxSnake, SnakeGame state) {
-        Random rand = new Random();
+    public AgentAction chooseAction(Policy policy, int idxSnake, SnakeGame state) {
+        Random rand = policy.getRandom();
         Snake snake = state.getSnakes().get(idxSnake);
         // Epsilon-greedy action selection
-        if (rand.nextDouble() < epsilon) {
+        boolean explore = rand.nextDouble() < policy.getEpsilon();
+        if (lambda > 0 && policy.isModeTrain()) {
+            trace(policy).explored = explore;
+        }
+        if (explore) {
             ArrayList<AgentAction> legalActions = new ArrayList<>();
             for (AgentAction action : AgentAction.values()) {
                 if (state.isLegalMove(snake, action)) {
@@ -238,6 +289,10 @@ public class ApproximateQLearning_solo extends Strategy {
         return bestAction;
     }
     
+    private static boolean isAt(Position p, int x, int y) {
+        return p.getX() == x && p.getY() == y;
+    }
+
     // Check if a position is next to another position (taking into account grid wrapping)
     /**
      * Checks if two positions are adjacent, considering grid wrapping
@@ -273,10 +328,58 @@ public class ApproximateQLearning_solo extends Strategy {
     @Override
     public void update(int idx, SnakeGame state, AgentAction moveAction, SnakeGame nextState, int reward, boolean isFinalState) {
         double[] features = getFeatures(idx, state, moveAction);
+        double tdError = tdError(idx, features, nextState, reward, isFinalState);
+
+        double learningRate = getAlpha(-1);
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] += learningRate * tdError * features[i];
+        }
+    }
 
+    /**
+     * Updates the weights with the eligibility trace of the game of the policy when lambda > 0
+     * (Watkins's Q(lambda), see Strategy.setTraces), with the one-step rule otherwise.
+     * The trace is one value per feature, so it is bounded whatever the length of the game.
+     */
+    @Override
+    public void update(Policy policy, int idx, SnakeGame state, AgentAction moveAction, SnakeGame nextState, int reward, boolean isFinalState) {
+        if (lambda <= 0) {
+            update(idx, state, moveAction, nextState, reward, isFinalState);
+            return;
+        }
+        double[] features = getFeatures(idx, state, moveAction);
+        double tdError = tdError(idx, features, nextState, reward, isFinalState);
+
+        Trace trace = trace(policy);
+        double[] z = trace.z;
+        // After an exploratory move the return no longer follows the greedy policy: the trace restarts
+        double decay = trace.explored ? 0.0 : gamma * lambda;
+        for (int i = 0; i < weights.length; i++) z[i] = decay * z[i] + features[i];
+
+        double learningRate = getAlpha(-1);
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] += learningRate * tdError * z[i];
+        }
+
+        if (isFinalState) {
+            Arrays.fill(z, 0.0);
+        }
+    }
+
+    // Error of the Q-value of the features against the reward plus the best Q-value of the next state
+    // With a target copy, the best next action is valued by the copy (and picked by it, or by the learned
+    // weights in double Q-learning)
+    private double tdError(int idx, double[] features, SnakeGame nextState, int reward, boolean isFinalState) {
         double qCurrent = 0.0;
         for (int i = 0; i < weights.length; i++) qCurrent += weights[i] * features[i];
 
+        double[] bootstrap = weights;
+        if (targetUpdateEvery > 0) {
+            refreshTargetWeights();
+            bootstrap = targetWeights;
+        }
+        double[] selection = doubleQ ? weights : bootstrap;
+
         double qNextMax = 0.0;
         if (!isFinalState) {
             double maxQ = Double.NEGATIVE_INFINITY;
@@ -284,17 +387,34 @@ public class ApproximateQLearning_solo extends Strategy {
                 if (!nextState.isLegalMove(nextState.getSnakes().get(idx), action)) continue;
                 double[] nextFeatures = getFeatures(idx, nextState, action);
                 double q = 0.0;
-                for (int i = 0; i < weights.length; i++) q += weights[i] * nextFeatures[i];
-                if (q > maxQ) maxQ = q;
+                for (int i = 0; i < weights.length; i++) q += selection[i] * nextFeatures[i];
+                if (q > maxQ) {
+                    maxQ = q;
+                    if (selection != bootstrap) {
+                        qNextMax = 0.0;
+                        for (int i = 0; i < weights.length; i++) qNextMax += bootstrap[i] * nextFeatures[i];
+                    }
+                }
             }
-            qNextMax = maxQ;
+            if (selection == bootstrap) qNextMax = maxQ;
         }
 
         double target = reward + (isFinalState ? 0.0 : gamma * qNextMax);
-        double tdError = target - qCurrent;
+        return target - qCurrent;
+    }
 
-        for (int i = 0; i < weights.length; i++) {
-            weights[i] += alpha * tdError * features[i];
+    private Trace trace(Policy policy) {
+        return policy.getState(Trace.class, () -> new Trace(weights.length));
+    }
+
+    // Eligibility trace of a game: one value per feature, and whether the last move was exploratory
+    static class Trace implements PolicyState {
+
+        private final double[] z;
+        private boolean explored;
+
+        Trace(int nbFeatures) {
+            z = new double[nbFeatures];
         }
     }
 }
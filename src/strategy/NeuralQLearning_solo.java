@@ -0,0 +1,323 @@
+package strategy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import agent.Snake;
+import model.SnakeGame;
+import utils.AgentAction;
+import utils.InferenceServer;
+import utils.LocalView;
+import utils.Mlp;
+
+
+// Q-learning with a small neural network (utils.Mlp): the input is the window of cells around the head
+// (utils.LocalView: walls, own body, other snakes, each item type) and the last move, the outputs are the
+// Q-values of the actions.
+// Transitions of all the games are gathered in one batch; the game that completes the batch swaps in an
+// empty one and trains the network on the full one, in one batched forward and backward pass, outside the
+// lock of the gathering: the other games keep adding transitions to the next batch and choosing actions
+// from the same weights (Hogwild style). The training steps themselves take turns.
+// Each thread infers with its own preallocated workspace, or, with setInferenceServer, sends its state to
+// an InferenceServer that evaluates the decisions of the concurrent games together.
+public class NeuralQLearning_solo extends Strategy {
+
+	private static final long serialVersionUID = 1L;
+
+	// Half width of the window around the head
+	private static final int RADIUS = 3;
+	private static final int INPUT_SIZE = LocalView.size(RADIUS) + AgentAction.values().length;
+
+	// Norm above which the gradient of a batch is scaled down
+	private static final double MAX_GRADIENT_NORM = 10;
+
+	private final Mlp network;
+	private final int batchSize;
+
+	// Batches of transitions and the workspace that trains on them
+	private transient Gathering gathering;
+	// Workspace of each thread for the inference of a single state
+	private transient ThreadLocal<Mlp.Workspace> inference;
+
+	// Batched inference: requests per batch (0 = each thread infers alone) and longest wait of a request
+	private int inferenceBatch;
+	private long inferenceLatencyMicros;
+	private transient InferenceServer server;
+
+
+	/**
+	 * Constructor
+	 * @param hidden Size of each hidden layer
+	 * @param batchSize Number of transitions per training step
+	 * @param seed Seed of the initial weights
+	 */
+	public NeuralQLearning_solo(int nbActions, double epsilon, double gamma, double alpha, int[] hidden, int batchSize, long seed) {
+		super(nbActions, epsilon, gamma, alpha);
+
+		int[] sizes = new int[hidden.length + 2];
+		sizes[0] = INPUT_SIZE;
+		System.arraycopy(hidden, 0, sizes, 1, hidden.length);
+		sizes[sizes.length - 1] = nbActions;
+
+		this.network = new Mlp(seed, sizes);
+		this.batchSize = batchSize;
+	}
+
+
+	/**
+	 * Writes the input of the network for the state into the buffer (INPUT_SIZE values)
+	 */
+	public void encode(int idxSnake, SnakeGame state, double[] buffer, int offset) {
+
+		LocalView view = LocalView.forThread();
+		view.sync(state);
+		view.encode(idxSnake, RADIUS, buffer, offset);
+
+		int moves = offset + LocalView.size(RADIUS);
+		Arrays.fill(buffer, moves, moves + AgentAction.values().length, 0.0);
+		buffer[moves + state.getSnakes().get(idxSnake).getLastMove().ordinal()] = 1;
+	}
+
+
+	@Override
+	public AgentAction chooseAction(int idxSnake, SnakeGame snakeGame) {
+		return chooseAction(newPolicy(isModeTrain()), idxSnake, snakeGame);
+	}
+
+	/**
+	 * Chooses a legal action using epsilon-greedy policy over the Q-values of the network
+	 */
+	@Override
+	public AgentAction chooseAction(Policy policy, int idxSnake, SnakeGame snakeGame) {
+
+		Snake snake = snakeGame.getSnakes().get(idxSnake);
+		AgentAction[] actions = AgentAction.values();
+		Random rand = policy.getRandom();
+
+		if(rand.nextDouble() < policy.getEpsilon()) {
+			ArrayList<AgentAction> legalActions = new ArrayList<AgentAction>();
+			for(AgentAction action : actions) {
+				if(snakeGame.isLegalMove(snake, action)) {
+					legalActions.add(action);
+				}
+			}
+			return legalActions.get(rand.nextInt(legalActions.size()));
+		}
+
+		Mlp.Workspace ws = inference().get();
+		double[] input = ws.getInput();
+		encode(idxSnake, snakeGame, input, 0);
+		InferenceServer inferenceServer = server();
+		double[] q = inferenceServer == null ? network.forward(ws, input, 1) : inferenceServer.evaluate(input, ws.getOutput());
+
+		AgentAction best = null;
+		for(AgentAction action : actions) {
+			if(snakeGame.isLegalMove(snake, action) && (best == null || q[action.ordinal()] > q[best.ordinal()])) {
+				best = action;
+			}
+		}
+		return best;
+	}
+
+
+	/**
+	 * Adds the transition to the batch, and trains the network when the batch is full
+	 */
+	@Override
+	public void update(int idx, SnakeGame state, AgentAction action, SnakeGame nextState, int reward, boolean isFinalState) {
+
+		Gathering g = gathering();
+
+		// Encoded before taking the lock, only copied under it
+		double[] encoded = g.encoded.get();
+		encode(idx, state, encoded, 0);
+		encode(idx, nextState, encoded, INPUT_SIZE);
+
+		// The target bootstraps only from the moves chooseAction could play in the next state
+		Snake nextSnake = nextState.getSnakes().get(idx);
+		int nextLegal = 0;
+		for(AgentAction a : AgentAction.values()) {
+			if(nextState.isLegalMove(nextSnake, a)) {
+				nextLegal |= 1 << a.ordinal();
+			}
+		}
+
+		Batch full = null;
+		synchronized(g) {
+			Batch b = g.filling;
+			int row = b.size;
+			System.arraycopy(encoded, 0, b.inputs, row * INPUT_SIZE, INPUT_SIZE);
+			System.arraycopy(encoded, INPUT_SIZE, b.nextInputs, row * INPUT_SIZE, INPUT_SIZE);
+			b.actions[row] = action.ordinal();
+			b.rewards[row] = reward;
+			b.finals[row] = isFinalState;
+			b.nextLegal[row] = nextLegal;
+			b.size++;
+
+			if(b.size == batchSize) {
+				full = b;
+				g.filling = g.spares.isEmpty() ? new Batch(batchSize) : g.spares.pop();
+			}
+		}
+
+		if(full != null) {
+			synchronized(g.trainer) {
+				train(g.trainer, full);
+			}
+			full.size = 0;
+			synchronized(g) {
+				g.spares.push(full);
+			}
+		}
+	}
+
+	// One gradient step on the squared TD error of the batch
+	private void train(Trainer t, Batch b) {
+
+		int n = b.size;
+
+		// Targets from the next states first: the backward pass needs the activations of the current states
+		double[] qNext = network.forward(t.workspace, b.nextInputs, n);
+		for(int row = 0; row < n; row++) {
+			double maxQ = Double.NEGATIVE_INFINITY;
+			for(int a = 0; a < nbActions; a++) {
+				if((b.nextLegal[row] & 1 << a) != 0) {
+					maxQ = Math.max(maxQ, qNext[row * nbActions + a]);
+				}
+			}
+			t.targets[row] = b.rewards[row] + (b.finals[row] || maxQ == Double.NEGATIVE_INFINITY ? 0 : gamma * maxQ);
+		}
+
+		double[] q = network.forward(t.workspace, b.inputs, n);
+		Arrays.fill(t.gradient, 0, n * nbActions, 0.0);
+		for(int row = 0; row < n; row++) {
+			int i = row * nbActions + b.actions[row];
+			t.gradient[i] = (q[i] - t.targets[row]) / n;
+		}
+
+		network.backward(t.workspace, t.gradient, n);
+		network.applyGradients(t.workspace, getAlpha(-1), MAX_GRADIENT_NORM);
+	}
+
+
+	// Buffers are not serialized: created on first use, also after a checkpoint is loaded
+	private Gathering gathering() {
+		Gathering g = gathering;
+		if(g == null) {
+			synchronized(this) {
+				if(gathering == null) {
+					gathering = new Gathering(new Trainer(network.newWorkspace(batchSize), batchSize, nbActions), batchSize);
+				}
+				g = gathering;
+			}
+		}
+		return g;
+	}
+
+	private ThreadLocal<Mlp.Workspace> inference() {
+		ThreadLocal<Mlp.Workspace> local = inference;
+		if(local == null) {
+			synchronized(this) {
+				if(inference == null) {
+					inference = ThreadLocal.withInitial(() -> network.newWorkspace(1));
+				}
+				local = inference;
+			}
+		}
+		return local;
+	}
+
+	private InferenceServer server() {
+		if(inferenceBatch <= 0) {
+			return null;
+		}
+		InferenceServer s = server;
+		if(s == null) {
+			synchronized(this) {
+				if(server == null) {
+					server = new InferenceServer(network, inferenceBatch, inferenceLatencyMicros);
+				}
+				s = server;
+			}
+		}
+		return s;
+	}
+
+
+	/**
+	 * Evaluates the greedy decisions of the concurrent games in batches
+	 * @param maxBatch Number of decisions per batch at most, 0 to let each thread infer alone
+	 * @param maxLatencyMicros Longest wait of a decision for its batch to fill up
+	 */
+	public synchronized void setInferenceServer(int maxBatch, long maxLatencyMicros) {
+		this.inferenceBatch = maxBatch;
+		this.inferenceLatencyMicros = maxLatencyMicros;
+		this.server = null;
+	}
+
+	/**
+	 * The inference server, null when each thread infers alone
+	 */
+	public InferenceServer getInferenceServer() {
+		return server();
+	}
+
+	public Mlp getNetwork() {
+		return network;
+	}
+
+
+	// The batch being filled (guarded by the lock of the gathering), the emptied batches ready to take its
+	// place, and the trainer (guarded by its own lock)
+	private static class Gathering {
+
+		private final Trainer trainer;
+		private final ThreadLocal<double[]> encoded = ThreadLocal.withInitial(() -> new double[2 * INPUT_SIZE]);
+		private final ArrayDeque<Batch> spares = new ArrayDeque<Batch>();
+		private Batch filling;
+
+		Gathering(Trainer trainer, int batchSize) {
+			this.trainer = trainer;
+			filling = new Batch(batchSize);
+		}
+	}
+
+	// Transitions of one training batch
+	private static class Batch {
+
+		private final double[] inputs;
+		private final double[] nextInputs;
+		private final int[] actions;
+		private final double[] rewards;
+		private final boolean[] finals;
+		// Legal moves of the next state, bit a set for the action of ordinal a
+		private final int[] nextLegal;
+		private int size;
+
+		Batch(int batchSize) {
+			inputs = new double[batchSize * INPUT_SIZE];
+			nextInputs = new double[batchSize * INPUT_SIZE];
+			actions = new int[batchSize];
+			rewards = new double[batchSize];
+			finals = new boolean[batchSize];
+			nextLegal = new int[batchSize];
+		}
+	}
+
+	// Workspace of a training step, with its targets and gradient
+	private static class Trainer {
+
+		private final Mlp.Workspace workspace;
+		private final double[] targets;
+		private final double[] gradient;
+
+		Trainer(Mlp.Workspace workspace, int batchSize, int nbActions) {
+			this.workspace = workspace;
+			targets = new double[batchSize];
+			gradient = new double[batchSize * nbActions];
+		}
+	}
+
+}
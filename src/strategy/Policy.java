@@ -0,0 +1,122 @@
+package strategy;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+import model.SnakeGame;
+import utils.AgentAction;
+
+
+// Handle of a strategy for one snake of one game: the mode (train or test) and the random numbers belong
+// to the handle, the learned parameters (Q-table, weights) and the schedules to the shared strategy.
+// Any number of games can play the same strategy at the same time, each in its own mode, and switching
+// the mode of one game never changes the games already running. Every training update of a handle counts
+// as a step of the strategy (see Schedule).
+public class Policy {
+
+	private final Strategy strategy;
+	private final boolean modeTrain;
+	private final Random rand = new Random();
+
+	// State of the strategy for this game (eligibility traces, search trees), created by the strategy
+	private PolicyState state;
+
+
+	/**
+	 * Constructor
+	 * @param strategy Shared strategy
+	 * @param modeTrain True to explore and learn, false to play greedily without learning
+	 */
+	public Policy(Strategy strategy, boolean modeTrain) {
+
+		this.strategy = strategy;
+		this.modeTrain = modeTrain;
+	}
+
+
+	/**
+	 * One policy per strategy, in the given mode
+	 */
+	public static Policy[] of(Strategy[] strats, boolean modeTrain) {
+
+		Policy[] policies = new Policy[strats.length];
+		for(int i = 0; i < strats.length; i++) {
+			policies[i] = strats[i].newPolicy(modeTrain);
+		}
+		return policies;
+	}
+
+	/**
+	 * One policy per strategy, each in the current mode of its strategy (see Strategy.setModeTrain)
+	 */
+	public static Policy[] of(Strategy[] strats) {
+
+		Policy[] policies = new Policy[strats.length];
+		for(int i = 0; i < strats.length; i++) {
+			policies[i] = strats[i].newPolicy(strats[i].isModeTrain());
+		}
+		return policies;
+	}
+
+
+	public AgentAction chooseAction(int idxSnake, SnakeGame snakeGame) {
+		return strategy.chooseAction(this, idxSnake, snakeGame);
+	}
+
+	/**
+	 * Learns from the transition, in training mode only
+	 */
+	public void update(int idxSnake, SnakeGame state, AgentAction action, SnakeGame nextState, int reward, boolean isFinalState) {
+		if(modeTrain) {
+			strategy.countStep();
+			strategy.update(this, idxSnake, state, action, nextState, reward, isFinalState);
+		}
+	}
+
+
+	/**
+	 * Seeds the random numbers of the handle, so that a seeded game is reproducible with a learning strategy too
+	 */
+	public void setSeed(long seed) {
+		rand.setSeed(seed);
+	}
+
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	public boolean isModeTrain() {
+		return modeTrain;
+	}
+
+	/**
+	 * Exploration rate of the strategy at its current step, 0 in test mode
+	 */
+	public double getEpsilon() {
+		return modeTrain ? strategy.getEpsilon(-1) : 0;
+	}
+
+	/**
+	 * Exploration rate after the given visits of the current state, 0 in test mode
+	 */
+	public double getEpsilon(long visits) {
+		return modeTrain ? strategy.getEpsilon(visits) : 0;
+	}
+
+	public Random getRandom() {
+		return rand;
+	}
+
+	/**
+	 * State of the strategy for this game, created on first use
+	 * @param type Class of the state of the strategy
+	 * @param create Creates the state
+	 */
+	public <T extends PolicyState> T getState(Class<T> type, Supplier<? extends T> create) {
+		if(state == null) {
+			state = create.get();
+		}
+		return type.cast(state);
+	}
+
+}
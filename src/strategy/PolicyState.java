@@ -0,0 +1,8 @@
+package strategy;
+
+
+// What a strategy keeps for one snake of one game, on its Policy: the eligibility traces of the learners,
+// the search trees of a planner. It lives as long as the game, and is never shared with another game.
+public interface PolicyState {
+
+}
@@ -0,0 +1,140 @@
+package strategy;
+
+import java.io.Serializable;
+
+
+// Value of a parameter (exploration rate, learning rate) as a function of a count: the number of training
+// steps of the strategy, summed over all the games that play it, or the number of visits of the current
+// state (of the updated state-action pair for the learning rate) for the strategies that count them
+// (TabularQLearning_solo).
+// Written as kind:start:end:length, prefixed with "visits:" to follow the visits of the state:
+//   0.3                      constant
+//   linear:0.3:0.01:100000   from start to end in a straight line over length steps, then end
+//   exp:0.3:0.01:20000       from start to end, the gap halved every length steps
+//   inverse:0.3:0.01:100     end + (start - end) * length / (length + count), the usual 1/n decay
+//   visits:inverse:1:0.05:1  the same, counted in visits of the state
+//   visits:inverse:1:0:1     1/n: the learning rate that averages the targets of each pair
+public class Schedule implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	// Shape of the schedule, parsed once: value() is called at every step
+	private enum Kind {
+
+		CONST("const"), LINEAR("linear"), EXP("exp"), INVERSE("inverse");
+
+		private final String name;
+
+		Kind(String name) {
+			this.name = name;
+		}
+
+		static Kind of(String name) {
+			for(Kind kind : values()) {
+				if(kind.name.equals(name)) {
+					return kind;
+				}
+			}
+			throw new IllegalArgumentException("Unknown schedule " + name);
+		}
+	}
+
+	private final Kind kind;
+	private final double start;
+	private final double end;
+	private final double length;
+	private final boolean perState;
+
+
+	private Schedule(Kind kind, double start, double end, double length, boolean perState) {
+
+		if(length <= 0 && kind != Kind.CONST) {
+			throw new IllegalArgumentException("The length of a schedule must be positive: " + length);
+		}
+		this.kind = kind;
+		this.start = start;
+		this.end = end;
+		this.length = length;
+		this.perState = perState;
+	}
+
+
+	public static Schedule constant(double value) {
+		return new Schedule(Kind.CONST, value, value, 0, false);
+	}
+
+	public static Schedule linear(double start, double end, long steps) {
+		return new Schedule(Kind.LINEAR, start, end, steps, false);
+	}
+
+	public static Schedule exponential(double start, double end, double halfLife) {
+		return new Schedule(Kind.EXP, start, end, halfLife, false);
+	}
+
+	public static Schedule inverse(double start, double end, double scale) {
+		return new Schedule(Kind.INVERSE, start, end, scale, false);
+	}
+
+
+	/**
+	 * Parses a schedule written as described above
+	 */
+	public static Schedule parse(String text) {
+
+		String[] parts = text.trim().split(":");
+		boolean perState = parts[0].equals("visits");
+		int first = perState ? 1 : 0;
+
+		if(parts.length - first == 1) {
+			Schedule constant = constant(Double.parseDouble(parts[first]));
+			return perState ? new Schedule(Kind.CONST, constant.start, constant.end, 0, true) : constant;
+		}
+		if(parts.length - first != 4) {
+			throw new IllegalArgumentException("Expected kind:start:end:length, got " + text);
+		}
+
+		Kind kind = Kind.of(parts[first]);
+		if(kind == Kind.CONST) {
+			throw new IllegalArgumentException("A constant schedule is written as its value, got " + text);
+		}
+		return new Schedule(kind, Double.parseDouble(parts[first + 1]), Double.parseDouble(parts[first + 2]), Double.parseDouble(parts[first + 3]), perState);
+	}
+
+
+	/**
+	 * Value after count steps (or visits)
+	 */
+	public double value(long count) {
+
+		switch(kind) {
+		case LINEAR:
+			return count >= length ? end : start + (end - start) * count / length;
+		case EXP:
+			return end + (start - end) * Math.pow(0.5, count / length);
+		case INVERSE:
+			return end + (start - end) * length / (length + count);
+		default:
+			return start;
+		}
+	}
+
+
+	/**
+	 * True if the schedule follows the visits of the current state rather than the global steps
+	 */
+	public boolean isPerState() {
+		return perState;
+	}
+
+
+	@Override
+	public String toString() {
+
+		String prefix = perState ? "visits:" : "";
+		if(kind == Kind.CONST) {
+			return prefix + start;
+		}
+		return prefix + kind.name + ":" + start + ":" + end + ":" + length;
+	}
+
+}
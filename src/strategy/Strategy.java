@@ -1,58 +1,148 @@
 package strategy;
 
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
 import agent.Snake;
 import model.SnakeGame;
 
 import utils.AgentAction;
 
 
-public abstract class Strategy {
+// Serializable so that learned parameters can be checkpointed and reloaded.
+// A strategy holds the parameters shared by all the games that play it; the mode, the exploration
+// rate and the random numbers of one game are in its Policy handles (see newPolicy).
+public abstract class Strategy implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
+	// Mode of the policies created without an explicit mode
 	private boolean modeTrain;
-	
+
 	protected int nbActions;
+	// Exploration rate in training mode
 	protected double epsilon;
-	protected double base_epsilon;
 	protected double gamma;
 	protected double alpha;
 
+	// Decay of the eligibility traces (0 = one-step Q-learning) and maximum number of steps they span
+	protected double lambda;
+	protected int traceLength = 32;
+
+	// Schedules replacing the constant epsilon and alpha when set
+	private Schedule epsilonSchedule;
+	private Schedule alphaSchedule;
+
+	// Training steps played by all the games of the strategy, drives the schedules (saved with the checkpoints)
+	private final AtomicLong steps = new AtomicLong();
+
 	public Strategy() {
 	}
-	
+
 	public Strategy(int nbActions, double epsilon, double gamma, double alpha) {
-		
+
 		this.nbActions = nbActions;
 		this.epsilon = epsilon;
-		this.base_epsilon = epsilon;
 		this.gamma = gamma;
 		this.alpha = alpha;
 	}
-	
+
 	public abstract AgentAction chooseAction(int idxSnake, SnakeGame snakeGame);
 
-	
+
 	public abstract void update(int idx, SnakeGame state,  AgentAction action, SnakeGame nextState, int reward, boolean isFinalState);
-	
-	
+
+
+	/**
+	 * Handle of the strategy for one snake of one game
+	 */
+	public Policy newPolicy(boolean modeTrain) {
+		return new Policy(this, modeTrain);
+	}
+
+	/**
+	 * Chooses an action with the mode and the random numbers of the policy.
+	 * Strategies without exploration ignore the policy.
+	 */
+	public AgentAction chooseAction(Policy policy, int idxSnake, SnakeGame snakeGame) {
+		return chooseAction(idxSnake, snakeGame);
+	}
+
+	/**
+	 * Learns from a transition played by the policy (only called in training mode)
+	 */
+	public void update(Policy policy, int idx, SnakeGame state, AgentAction action, SnakeGame nextState, int reward, boolean isFinalState) {
+		update(idx, state, action, nextState, reward, isFinalState);
+	}
+
+
+	/**
+	 * Exploration rate in training mode, at the current step or after the given visits of the current state
+	 * @param visits Visits of the current state (negative = unknown, a per-state schedule then follows the steps)
+	 */
+	public double getEpsilon(long visits) {
+		return valueOf(epsilonSchedule, epsilon, visits);
+	}
+
+	/**
+	 * Learning rate, at the current step or after the given visits of the updated state-action pair (negative = unknown)
+	 */
+	public double getAlpha(long visits) {
+		return valueOf(alphaSchedule, alpha, visits);
+	}
+
+	private double valueOf(Schedule schedule, double constant, long visits) {
+		if(schedule == null) {
+			return constant;
+		}
+		return schedule.value(schedule.isPerState() && visits >= 0 ? visits : steps.get());
+	}
+
+	// Called once per training step, by the policies
+	void countStep() {
+		steps.incrementAndGet();
+	}
+
+	public long getSteps() {
+		return steps.get();
+	}
+
+	/**
+	 * Makes the learners update with eligibility traces: Watkins's Q(lambda), the traces cut after an
+	 * exploratory move and bounded to the last traceLength steps of the game (lambda = 1 and
+	 * traceLength = n back up the rewards over the last n steps, like n-step Q-learning)
+	 */
+	public void setTraces(double lambda, int traceLength) {
+		if(traceLength < 1) {
+			throw new IllegalArgumentException("A trace spans at least one step: " + traceLength);
+		}
+		this.lambda = lambda;
+		this.traceLength = traceLength;
+	}
+
+	public void setEpsilonSchedule(Schedule epsilonSchedule) {
+		this.epsilonSchedule = epsilonSchedule;
+	}
+
+	public void setAlphaSchedule(Schedule alphaSchedule) {
+		this.alphaSchedule = alphaSchedule;
+	}
+
+
 	public boolean isModeTrain() {
 		return modeTrain;
 	}
 
 
+	/**
+	 * Sets the mode of the games set up from now on; the games already running keep their own mode
+	 */
 	public void setModeTrain(boolean modeTrain) {
-		
 		this.modeTrain = modeTrain;
-		
-		if(this.modeTrain) {
-			this.epsilon = this.base_epsilon;
-		} else {
-			this.epsilon = 0;
-			
-		}
 	}
 
 
-	
 
-	
+
+
 }
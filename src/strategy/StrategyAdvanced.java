@@ -7,14 +7,30 @@ import agent.Snake;
 import model.SnakeGame;
 import utils.AgentAction;
 import utils.Position;
+import utils.ReachableArea;
 
 public class StrategyAdvanced extends Strategy{
 
-	
+	private static final long serialVersionUID = 1L;
+
+	// Flood fill of the area left after a move, one per thread since games run in parallel
+	private static final ThreadLocal<ReachableArea> REACHABLE_AREA = ThreadLocal.withInitial(() -> new ReachableArea(true));
 
 
 	@Override
 	public AgentAction chooseAction(int idxSnake, SnakeGame snakeGame) {
+		return chooseAction(idxSnake, snakeGame, new Random());
+	}
+
+	/**
+	 * Draws the random moves with the random numbers of the policy, so that a seeded game is reproducible
+	 */
+	@Override
+	public AgentAction chooseAction(Policy policy, int idxSnake, SnakeGame snakeGame) {
+		return chooseAction(idxSnake, snakeGame, policy.getRandom());
+	}
+
+	private AgentAction chooseAction(int idxSnake, SnakeGame snakeGame, Random rand) {
 		
 		
 		AgentAction[] listActions = AgentAction.values();
@@ -33,7 +49,35 @@ public class StrategyAdvanced extends Strategy{
 			
 		}
 		
-		Random rand = new Random();
+		// Among the safe moves, keep those that leave enough room for the body (no dead-end pocket),
+		// or the one with the largest room if every move leads into a pocket
+		if(nonLetalActions.size() > 1) {
+			
+			Snake snake = snakeGame.getSnakes().get(idxSnake);
+			ReachableArea reachableArea = REACHABLE_AREA.get();
+			int limit = snake.getSize() + 1;
+			
+			ArrayList<AgentAction> roomyActions = new ArrayList<AgentAction>();
+			AgentAction largestAction = null;
+			int largestArea = -1;
+			
+			for(AgentAction action : nonLetalActions) {
+				int area = reachableArea.count(snakeGame, idxSnake, action, limit);
+				if(area >= limit) {
+					roomyActions.add(action);
+				}
+				if(area > largestArea) {
+					largestArea = area;
+					largestAction = action;
+				}
+			}
+			
+			if(roomyActions.size() > 0) {
+				nonLetalActions = roomyActions;
+			} else {
+				return largestAction;
+			}
+		}
 		
 		if(nonLetalActions.size()> 0) {
 			
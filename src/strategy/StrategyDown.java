@@ -6,6 +6,8 @@ import utils.AgentAction;
 
 public class StrategyDown extends Strategy{
 
+	private static final long serialVersionUID = 1L;
+
 
 
 
@@ -0,0 +1,347 @@
+package strategy;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import agent.Snake;
+import model.GameSnapshot;
+import model.SnakeGame;
+import utils.AgentAction;
+
+
+// Monte Carlo Tree Search strategy, meant as a strong (non-learning) opponent.
+// Each decision runs rollouts for a fixed time budget on a private copy of the game, using the
+// snapshot/restore API of SnakeGame. The tree is open-loop: a node stands for a sequence of own actions,
+// apples and opponents being sampled again at each rollout (opponents follow the rollout policy): the copy
+// of the game is reseeded after each restore, or every rollout would meet the apples of the real game.
+// Search is root-parallel: several workers grow independent trees and their root visit counts are summed.
+// The subtree of the action played is kept for the next turn, with the game copies, on the Policy of the
+// game: any number of games can share an instance and decide at the same time. The random numbers of
+// each worker are seeded from the Policy at each decision, so a seeded game is reproduced as long as the
+// budget lets the workers run the same number of rollouts.
+public class StrategyMCTS extends Strategy {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final double REWARD_DEAD = -10;
+
+	// Time a decision still waits for a worker past the deadline, for its last rollout
+	private static final long GRACE_NANOS = 1_000_000L;
+
+	// Workers of all the MCTS instances
+	private static final ExecutorService POOL = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+		Thread thread = new Thread(r, "snake-mcts");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// Thinking time per move, in milliseconds
+	private long budgetMillis;
+	// Number of independent trees (root parallelism)
+	private int nbWorkers;
+	// "random" (uniform legal moves) or "safe" (random among moves that do not hit a wall or the own body)
+	private String rolloutPolicy;
+	// Number of turns simulated after the tree
+	private int rolloutDepth;
+	// Exploration constant of UCB1
+	private double exploration;
+
+	/**
+	 * Constructor with a single worker, safe rollouts of 20 turns and exploration 2
+	 */
+	public StrategyMCTS(long budgetMillis) {
+		this(budgetMillis, 1, "safe", 20, 2.0);
+	}
+
+	public StrategyMCTS(long budgetMillis, int nbWorkers, String rolloutPolicy, int rolloutDepth, double exploration) {
+
+		if(!rolloutPolicy.equals("random") && !rolloutPolicy.equals("safe")) {
+			throw new IllegalArgumentException("Unknown rollout policy " + rolloutPolicy);
+		}
+		this.budgetMillis = budgetMillis;
+		this.nbWorkers = nbWorkers;
+		this.rolloutPolicy = rolloutPolicy;
+		this.rolloutDepth = rolloutDepth;
+		this.exploration = exploration;
+	}
+
+
+	@Override
+	public AgentAction chooseAction(int idxSnake, SnakeGame snakeGame) {
+		return chooseAction(newPolicy(isModeTrain()), idxSnake, snakeGame);
+	}
+
+	/**
+	 * Searches until the deadline with the trees of the game of the policy; the workers that have not
+	 * finished shortly after the deadline (the shared pool being busy) are left out of the decision
+	 */
+	@Override
+	public AgentAction chooseAction(Policy policy, int idxSnake, SnakeGame snakeGame) {
+
+		long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+
+		Search search = policy.getState(Search.class, Search::new);
+		Worker[] workers = search.workers;
+
+		boolean sameGame = snakeGame.getGameId() == search.lastGameId;
+		boolean reuseTrees = sameGame && snakeGame.getTurn() == search.lastTurn + 1;
+
+		GameSnapshot rootState = new GameSnapshot();
+		snakeGame.saveState(rootState);
+
+		for(Worker worker : workers) {
+			worker.rand.setSeed(policy.getRandom().nextLong());
+			if(!sameGame || worker.sim == null) {
+				worker.sim = snakeGame.copyForSimulation();
+			}
+			if(!reuseTrees || worker.tree == null) {
+				worker.tree = new Node();
+			}
+		}
+
+		ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+		for(int w = 1; w < nbWorkers; w++) {
+			Worker worker = workers[w];
+			futures.add(POOL.submit(() -> worker.search(idxSnake, rootState, deadline)));
+		}
+		workers[0].search(idxSnake, rootState, deadline);
+
+		boolean[] finished = new boolean[nbWorkers];
+		finished[0] = true;
+		for(int w = 1; w < nbWorkers; w++) {
+			Future<?> future = futures.get(w - 1);
+			try {
+				future.get(Math.max(0, deadline - System.nanoTime()) + GRACE_NANOS, TimeUnit.NANOSECONDS);
+				finished[w] = true;
+			} catch (TimeoutException e) {
+				// Not started or still running: it may go on with its tree and its copy of the game,
+				// so both are given up and the worker is replaced for the next turn
+				future.cancel(false);
+				workers[w] = new Worker();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				future.cancel(false);
+				workers[w] = new Worker();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("MCTS worker failed", e.getCause());
+			}
+		}
+
+		// Most visited action over the trees of the finished workers
+		Snake snake = snakeGame.getSnakes().get(idxSnake);
+		AgentAction bestAction = snake.getLastMove();
+		long bestVisits = -1;
+		for(AgentAction action : AgentAction.values()) {
+			if(!snakeGame.isLegalMove(snake, action)) {
+				continue;
+			}
+			long visits = 0;
+			for(int w = 0; w < nbWorkers; w++) {
+				Node child = finished[w] ? workers[w].tree.children[action.ordinal()] : null;
+				if(child != null) {
+					visits += child.visits;
+				}
+			}
+			if(visits > bestVisits) {
+				bestVisits = visits;
+				bestAction = action;
+			}
+		}
+
+		// No rollout at all within the budget (an overloaded machine): a move of the rollout policy rather
+		// than the first legal one
+		if(bestVisits <= 0) {
+			bestAction = workers[0].fallback(idxSnake, rootState);
+		}
+
+		// Keep the subtree of the action played for the next turn
+		for(int w = 0; w < nbWorkers; w++) {
+			if(finished[w]) {
+				Node child = workers[w].tree.children[bestAction.ordinal()];
+				workers[w].tree = child != null ? child : new Node();
+			}
+		}
+		search.lastGameId = snakeGame.getGameId();
+		search.lastTurn = snakeGame.getTurn();
+
+		return bestAction;
+	}
+
+
+	@Override
+	public void update(int idx, SnakeGame state, AgentAction action, SnakeGame nextState, int reward, boolean isFinalState) {
+	}
+
+
+	// Node of an open-loop tree: statistics of a sequence of own actions
+	private static class Node {
+
+		Node[] children = new Node[AgentAction.values().length];
+		long visits;
+		double totalReward;
+	}
+
+
+	// Trees of one snake in one game, with the game and turn of its previous decision, to know whether the
+	// trees can be reused (the game may be a different copy at each turn when the agents decide in parallel)
+	private class Search implements PolicyState {
+
+		final Worker[] workers = new Worker[nbWorkers];
+		long lastGameId = -1;
+		int lastTurn;
+
+		Search() {
+			for(int w = 0; w < nbWorkers; w++) {
+				workers[w] = new Worker();
+			}
+		}
+	}
+
+
+	// One tree with its own copy of the game
+	private class Worker {
+
+		SnakeGame sim;
+		Node tree;
+
+		private final StrategyAdvanced safety = new StrategyAdvanced();
+		private final Random rand = new Random();
+		private final ArrayList<Node> path = new ArrayList<Node>();
+		private final AgentAction[] actions = new AgentAction[AgentAction.values().length];
+		private final AgentAction[] candidates = new AgentAction[AgentAction.values().length];
+		private AgentAction[] turnActions;
+
+
+		void search(int idxSnake, GameSnapshot rootState, long deadline) {
+
+			int nbSnakes = sim.getSnakes().size();
+			if(turnActions == null || turnActions.length != nbSnakes) {
+				turnActions = new AgentAction[nbSnakes];
+			}
+
+			// The deadline is checked before each rollout: a worker that starts late (the pool being busy
+			// with other games) does not run past it
+			while(System.nanoTime() < deadline) {
+				restore(rootState);
+				int startScore = sim.getTabTotalScoreSnakes()[idxSnake];
+				Snake snake = sim.getSnakes().get(idxSnake);
+
+				path.clear();
+				Node node = tree;
+				path.add(node);
+				boolean expanded = false;
+
+				// Selection and expansion
+				while(!expanded && !snake.isDead() && !sim.isFinished()) {
+
+					int nbActions = legalActions(snake);
+					AgentAction chosen = null;
+
+					// An action never tried is expanded first
+					int nbUntried = 0;
+					for(int i = 0; i < nbActions; i++) {
+						if(node.children[actions[i].ordinal()] == null) {
+							candidates[nbUntried++] = actions[i];
+						}
+					}
+					if(nbUntried > 0) {
+						chosen = candidates[rand.nextInt(nbUntried)];
+						node.children[chosen.ordinal()] = new Node();
+						expanded = true;
+					} else {
+						double bestUcb = Double.NEGATIVE_INFINITY;
+						double logVisits = Math.log(Math.max(1, node.visits));
+						for(int i = 0; i < nbActions; i++) {
+							Node child = node.children[actions[i].ordinal()];
+							double ucb = child.totalReward / child.visits + exploration * Math.sqrt(logVisits / child.visits);
+							if(ucb > bestUcb) {
+								bestUcb = ucb;
+								chosen = actions[i];
+							}
+						}
+					}
+
+					node = node.children[chosen.ordinal()];
+					path.add(node);
+
+					playTurn(idxSnake, chosen);
+				}
+
+				// Rollout
+				for(int d = 0; d < rolloutDepth && !snake.isDead() && !sim.isFinished(); d++) {
+					playTurn(idxSnake, rolloutAction(snake));
+				}
+
+				double reward = sim.getTabTotalScoreSnakes()[idxSnake] - startScore + (snake.isDead() ? REWARD_DEAD : 0);
+
+				for(Node n : path) {
+					n.visits++;
+					n.totalReward += reward;
+				}
+
+			}
+		}
+
+
+		AgentAction fallback(int idxSnake, GameSnapshot rootState) {
+			restore(rootState);
+			return rolloutAction(sim.getSnakes().get(idxSnake));
+		}
+
+
+		// Back to the state of the decision, with new apples and items to come
+		private void restore(GameSnapshot rootState) {
+			sim.restoreState(rootState);
+			sim.reseedRandom(rand.nextLong());
+		}
+
+		// Plays one simulated turn, the other snakes following the rollout policy
+		private void playTurn(int idxSnake, AgentAction ownAction) {
+
+			for(int s = 0; s < turnActions.length; s++) {
+				Snake other = sim.getSnakes().get(s);
+				turnActions[s] = s == idxSnake ? ownAction : (other.isDead() ? null : rolloutAction(other));
+			}
+			sim.simulateStep(turnActions);
+		}
+
+
+		// Fills "actions" with the moves that do not turn back, returns their number
+		private int legalActions(Snake snake) {
+
+			int n = 0;
+			for(AgentAction action : AgentAction.values()) {
+				if(sim.isLegalMove(snake, action)) {
+					actions[n++] = action;
+				}
+			}
+			return n;
+		}
+
+
+		private AgentAction rolloutAction(Snake snake) {
+
+			int nbActions = legalActions(snake);
+
+			if(rolloutPolicy.equals("safe")) {
+				int nbSafe = 0;
+				for(int i = 0; i < nbActions; i++) {
+					if(!safety.isLetalMove(snake, sim, actions[i])) {
+						candidates[nbSafe++] = actions[i];
+					}
+				}
+				if(nbSafe > 0) {
+					return candidates[rand.nextInt(nbSafe)];
+				}
+			}
+			return actions[rand.nextInt(nbActions)];
+		}
+	}
+
+}
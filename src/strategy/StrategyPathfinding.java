@@ -0,0 +1,295 @@
+package strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import agent.Snake;
+import item.Item;
+import model.SnakeGame;
+import utils.AgentAction;
+import utils.ItemType;
+import utils.Position;
+
+
+// Path-planning strategy: breadth-first search from the head to the nearest apple, avoiding walls and
+// snake bodies, wrapping around the edges like Snake.move. When no apple can be reached the snake
+// follows its own tail, which keeps it alive as long as the tail is reachable.
+// The search works on cell indexes (x * sizeY + y) with arrays allocated once per board size and per
+// thread, so that the games sharing the strategy decide in parallel; cells are marked with a stamp that
+// changes at every use instead of clearing the arrays, so a decision allocates nothing.
+public class StrategyPathfinding extends Strategy {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final AgentAction[] ACTIONS = AgentAction.values();
+
+	// Arrays of the searches, one set per thread
+	private static final ThreadLocal<Search> SEARCH = ThreadLocal.withInitial(Search::new);
+
+
+	@Override
+	public AgentAction chooseAction(int idxSnake, SnakeGame snakeGame) {
+		return SEARCH.get().chooseAction(idxSnake, snakeGame);
+	}
+
+
+	@Override
+	public void update(int idx, SnakeGame state, AgentAction action, SnakeGame nextState, int reward, boolean isFinalState) {
+	}
+
+
+	// Scratch state of the searches of one thread
+	private static class Search {
+
+		private int sizeX;
+		private int sizeY;
+
+		private int[] queue;
+		// Cells visited by the current search, occupied by a body, and searched for (apples or tail)
+		private int[] visited;
+		private int[] blocked;
+		private int[] goal;
+		// Walls of the board, copied from the game in cell order
+		private boolean[] wall;
+		private boolean[][] wallSource;
+		// First move of the path that reached the cell
+		private byte[] firstMove;
+
+		// One stamp per array: a new stamp of one array never wipes the marks of another still in use
+		private int goalStamp;
+		private int searchStamp;
+		private int blockedStamp;
+
+
+		AgentAction chooseAction(int idxSnake, SnakeGame snakeGame) {
+
+			Snake snake = snakeGame.getSnakes().get(idxSnake);
+
+			prepare(snakeGame);
+			markBodies(snakeGame);
+
+			// A sick snake cannot eat, it only needs to survive
+			if(snake.getSickTimer() < 1) {
+				nextGoalStamp();
+				boolean anyApple = false;
+				ArrayList<Item> items = snakeGame.getItems();
+				for(int i = 0; i < items.size(); i++) {
+					Item item = items.get(i);
+					if(item.getItemType() == ItemType.APPLE) {
+						goal[cell(item.getX(), item.getY())] = goalStamp;
+						anyApple = true;
+					}
+				}
+				if(anyApple) {
+					int move = search(snake, snakeGame);
+					if(move >= 0) {
+						return ACTIONS[move];
+					}
+				}
+			}
+
+			// Fallback: follow the tail
+			if(snake.getSize() > 1) {
+				nextGoalStamp();
+				Position tail = snake.getPositions().get(snake.getSize() - 1);
+				goal[cell(tail.getX(), tail.getY())] = goalStamp;
+				int move = search(snake, snakeGame);
+				if(move >= 0) {
+					return ACTIONS[move];
+				}
+			}
+
+			// No path at all: any move that does not hit a wall or a body right away
+			int head = cell(snake.getX(), snake.getY());
+			for(int a = 0; a < ACTIONS.length; a++) {
+				if(snakeGame.isLegalMove(snake, ACTIONS[a]) && !isBlocked(neighbour(head, ACTIONS[a]))) {
+					return ACTIONS[a];
+				}
+			}
+			return snake.getLastMove();
+		}
+
+
+		/**
+		 * Breadth-first search from the head of the snake to the nearest cell marked with the goal stamp
+		 * @return Ordinal of the first move of the shortest path, -1 if no goal cell can be reached
+		 */
+		private int search(Snake snake, SnakeGame snakeGame) {
+
+			nextSearchStamp();
+			int head = cell(snake.getX(), snake.getY());
+
+			int start = 0;
+			int end = 0;
+			visited[head] = searchStamp;
+
+			// The first moves are expanded apart: turning back is not allowed
+			for(int a = 0; a < ACTIONS.length; a++) {
+				if(!snakeGame.isLegalMove(snake, ACTIONS[a])) {
+					continue;
+				}
+				int next = neighbour(head, ACTIONS[a]);
+				// Apples may be dropped on a body: a goal must be free too
+				if(isBlocked(next)) {
+					continue;
+				}
+				if(goal[next] == goalStamp) {
+					return a;
+				}
+				if(visited[next] != searchStamp) {
+					visited[next] = searchStamp;
+					firstMove[next] = (byte) a;
+					queue[end++] = next;
+				}
+			}
+
+			while(start < end) {
+				int current = queue[start++];
+				int x = current / sizeY;
+				int y = current - x * sizeY;
+
+				// Up, down, left, right
+				for(int k = 0; k < 4; k++) {
+					int next;
+					switch(k) {
+					case 0:
+						next = y > 0 ? current - 1 : current + sizeY - 1;
+						break;
+					case 1:
+						next = y < sizeY - 1 ? current + 1 : current - sizeY + 1;
+						break;
+					case 2:
+						next = x > 0 ? current - sizeY : current + (sizeX - 1) * sizeY;
+						break;
+					default:
+						next = x < sizeX - 1 ? current + sizeY : y;
+						break;
+					}
+					if(visited[next] == searchStamp || blocked[next] == blockedStamp || wall[next]) {
+						continue;
+					}
+					if(goal[next] == goalStamp) {
+						return firstMove[current];
+					}
+					visited[next] = searchStamp;
+					firstMove[next] = firstMove[current];
+					queue[end++] = next;
+				}
+			}
+
+			return -1;
+		}
+
+
+		// (Re)allocates the arrays when the board size changes
+		private void prepare(SnakeGame snakeGame) {
+
+			if(queue == null || sizeX != snakeGame.getSizeX() || sizeY != snakeGame.getSizeY()) {
+				sizeX = snakeGame.getSizeX();
+				sizeY = snakeGame.getSizeY();
+				int nbCells = sizeX * sizeY;
+				queue = new int[nbCells];
+				visited = new int[nbCells];
+				blocked = new int[nbCells];
+				goal = new int[nbCells];
+				firstMove = new byte[nbCells];
+				wall = new boolean[nbCells];
+				wallSource = null;
+				goalStamp = 0;
+				searchStamp = 0;
+				blockedStamp = 0;
+			}
+
+			// Every game has its own walls array
+			boolean[][] walls = snakeGame.getWalls();
+			if(walls != wallSource) {
+				for(int x = 0; x < sizeX; x++) {
+					System.arraycopy(walls[x], 0, wall, x * sizeY, sizeY);
+				}
+				wallSource = walls;
+			}
+		}
+
+
+		// After an overflow old marks could match again: the array starts over clean
+		private void nextGoalStamp() {
+			if(goalStamp == Integer.MAX_VALUE) {
+				Arrays.fill(goal, 0);
+				goalStamp = 0;
+			}
+			goalStamp++;
+		}
+
+		private void nextSearchStamp() {
+			if(searchStamp == Integer.MAX_VALUE) {
+				Arrays.fill(visited, 0);
+				searchStamp = 0;
+			}
+			searchStamp++;
+		}
+
+		private void nextBlockedStamp() {
+			if(blockedStamp == Integer.MAX_VALUE) {
+				Arrays.fill(blocked, 0);
+				blockedStamp = 0;
+			}
+			blockedStamp++;
+		}
+
+
+		// Marks the cells occupied by living snakes. The tails are left free since they move away this turn.
+		private void markBodies(SnakeGame snakeGame) {
+
+			nextBlockedStamp();
+			ArrayList<Snake> snakes = snakeGame.getSnakes();
+			for(int s = 0; s < snakes.size(); s++) {
+				Snake other = snakes.get(s);
+				if(other.isDead()) {
+					continue;
+				}
+				ArrayList<Position> positions = other.getPositions();
+				for(int i = 0; i < positions.size() - 1; i++) {
+					Position p = positions.get(i);
+					blocked[cell(p.getX(), p.getY())] = blockedStamp;
+				}
+			}
+		}
+
+
+		private boolean isBlocked(int cell) {
+			return blocked[cell] == blockedStamp || wall[cell];
+		}
+
+
+		private int cell(int x, int y) {
+			return x * sizeY + y;
+		}
+
+
+		// Cell reached from the given cell with an action, wrapping around the edges
+		private int neighbour(int cell, AgentAction action) {
+
+			int x = cell / sizeY;
+			int y = cell % sizeY;
+
+			switch(action) {
+			case MOVE_UP:
+				y = y > 0 ? y - 1 : sizeY - 1;
+				break;
+			case MOVE_DOWN:
+				y = (y + 1) % sizeY;
+				break;
+			case MOVE_LEFT:
+				x = x > 0 ? x - 1 : sizeX - 1;
+				break;
+			case MOVE_RIGHT:
+				x = (x + 1) % sizeX;
+				break;
+			default:
+				break;
+			}
+			return cell(x, y);
+		}
+	}
+
+}
@@ -8,15 +8,27 @@ import utils.AgentAction;
 
 public class StrategyRandom extends Strategy{
 
+	private static final long serialVersionUID = 1L;
+
 
 
 	@Override
 	public AgentAction chooseAction(int idxSnake, SnakeGame snakeGame) {
+		return chooseAction(new Random());
+	}
+
+	/**
+	 * Draws the move with the random numbers of the policy, so that a seeded game is reproducible
+	 */
+	@Override
+	public AgentAction chooseAction(Policy policy, int idxSnake, SnakeGame snakeGame) {
+		return chooseAction(policy.getRandom());
+	}
+
+	private AgentAction chooseAction(Random rand) {
 		
 		AgentAction[] listActions = AgentAction.values();
 		
-		Random rand = new Random();
-		
         int randomIndex = rand.nextInt(listActions.length);
         
         
@@ -2,32 +2,67 @@ package strategy;
 
 
 import java.util.ArrayList;
-import java.util.HashMap;
-
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 import agent.Snake;
 import item.Item;
+import metrics.Metrics;
 import model.SnakeGame;
 import utils.AgentAction;
 import utils.ItemType;
+import utils.LocalView;
 import utils.Position;
 
 
 
-// Tabular Q-Learning strategy for Snake agent
+// Tabular Q-Learning strategy for Snake agent.
+// The Q-table is shared without locks by all the games playing the strategy: rows are added atomically,
+// and the Q-values of a row are updated in place (Hogwild style, a rare lost update between two games
+// visiting the same state at the same time is accepted).
+// A state is stored only once an update changes one of its Q-values (an unseen state reads as all zeros),
+// and the table can be bounded: past the capacity, a tenth of the states is evicted at once.
 public class TabularQLearning_solo extends Strategy {
-	// Q-table: maps state (String) to an array of Q-values for each action
-	private HashMap<String, double[]> Q;
-	// Number of possible actions
-	private int nbActions;
-	// Exploration rate
-	private double epsilon;
-	// Discount factor
-	private double gamma;
-	// Learning rate
-	private double alpha;
+
+	private static final long serialVersionUID = 1L;
+
+	// Q-table: maps state (String) to one slot per action holding its Q-value, followed by one slot per action
+	// holding the number of updates of the pair, and by the step of the last update of the state:
+	// [q0 .. q(n-1), n0 .. n(n-1), last]. The counts drive the per-state schedules (see Schedule) and the
+	// exploration bonus; a count stays exact in a double up to 2^53.
+	private ConcurrentHashMap<String, double[]> Q;
+
+	// Row of the states that are not in the table, never written
+	private final double[] unseen;
+
+	// Maximum number of states (0 = unbounded) and order of eviction:
+	// "lru" least recently updated first, "count" least updated first, "zero" smallest Q-values first
+	private int capacity;
+	private String eviction = "lru";
+
+	// Lookups that found their state, that did not, and evicted states
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
+	// Share of the error under which the older pairs of a trace are left alone
+	private static final double MIN_ELIGIBILITY = 1e-3;
+
+	// Exploration bonus in training mode: bonus / sqrt(1 + visits of the pair) is added to each Q-value
+	// before taking the best one, so that rarely tried actions get tried (0 = plain epsilon-greedy)
+	private double explorationBonus;
+
+	// States keyed by the window of this radius around the head (utils.LocalView) and the last move,
+	// rather than by the whole grid (0): far fewer states, shared between positions of the board
+	private int viewRadius;
 
 	/**
 	 * Constructor: initializes Q-table and parameters
@@ -38,11 +73,88 @@ public class TabularQLearning_solo extends Strategy {
 	 */
 	public TabularQLearning_solo(int nbActions, double epsilon, double gamma, double alpha) {
 		super(nbActions, epsilon, gamma, alpha);
-		this.Q = new HashMap<>();
-		this.nbActions = nbActions;
-		this.epsilon = epsilon;
-		this.gamma = gamma;
-		this.alpha = alpha;
+		this.Q = new ConcurrentHashMap<>();
+		this.unseen = new double[2 * nbActions + 1];
+	}
+
+	/**
+	 * Returns the number of states stored in the Q-table
+	 */
+	public int getQTableSize() {
+		return Q.size();
+	}
+
+	public void setViewRadius(int viewRadius) {
+		this.viewRadius = viewRadius;
+	}
+
+	public void setExplorationBonus(double explorationBonus) {
+		this.explorationBonus = explorationBonus;
+	}
+
+	/**
+	 * Bounds the number of states of the table
+	 * @param capacity Maximum number of states (0 = unbounded)
+	 * @param eviction "lru", "count" or "zero" (see the fields)
+	 */
+	public void setCapacity(int capacity, String eviction) {
+
+		switch(eviction) {
+		case "lru":
+		case "count":
+		case "zero":
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown eviction " + eviction);
+		}
+		this.capacity = capacity;
+		this.eviction = eviction;
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Fraction of the lookups that found their state in the table
+	 */
+	public double getHitRate() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	/**
+	 * Statistics of the visits of the Q-table, to decide what to prune
+	 * @param nbHot Number of most visited states to report
+	 */
+	public TableStats getTableStats(int nbHot) {
+
+		TableStats stats = new TableStats();
+		PriorityQueue<Long> hot = new PriorityQueue<Long>();
+
+		for(double[] qValues : Q.values()) {
+			long visits = stateVisits(qValues);
+			stats.states++;
+			stats.visits += visits;
+			if(visits == 0) {
+				stats.neverUpdated++;
+			} else if(visits == 1) {
+				stats.seenOnce++;
+			}
+			hot.add(visits);
+			if(hot.size() > nbHot) {
+				hot.poll();
+			}
+		}
+
+		stats.hotVisits = new long[hot.size()];
+		for(int i = stats.hotVisits.length - 1; i >= 0; i--) {
+			stats.hotVisits[i] = hot.poll();
+		}
+		stats.evictions = getEvictions();
+		stats.hitRate = getHitRate();
+		return stats;
 	}
 
 	/**
@@ -52,6 +164,16 @@ public class TabularQLearning_solo extends Strategy {
 	 * @return Encoded state as String
 	 */
 	public String encodeState(int idxSnake, SnakeGame snakeGame) {
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		if(viewRadius > 0) {
+			LocalView view = LocalView.forThread();
+			view.sync(snakeGame);
+			String key = view.key(idxSnake, viewRadius) + snakeGame.getSnakes().get(idxSnake).getLastMove().ordinal();
+			if(Metrics.ENABLED) {
+				Metrics.ENCODE_STATE.record(System.nanoTime() - start);
+			}
+			return key;
+		}
 		String state = "";
 		String[][] t = new String[snakeGame.getSizeX()][snakeGame.getSizeY()];
 		Snake snake = snakeGame.getSnakes().get(idxSnake);
@@ -111,39 +233,50 @@ public class TabularQLearning_solo extends Strategy {
 			}
 		}
 
+		if(Metrics.ENABLED) {
+			Metrics.ENCODE_STATE.record(System.nanoTime() - start);
+		}
 		return state;
 	}
     
    
     
 	/**
-	 * Chooses an action for the snake using epsilon-greedy policy
+	 * Chooses an action for the snake using epsilon-greedy policy, in the current mode of the strategy
 	 * @param idxSnake Index of the snake agent
 	 * @param snakeGame Current game state
 	 * @return Chosen AgentAction
 	 */
 	@Override
-	public synchronized AgentAction chooseAction(int idxSnake, SnakeGame snakeGame) {
-		String state = encodeState(idxSnake, snakeGame);
-		double[] qValues = Q.get(state);
+	public AgentAction chooseAction(int idxSnake, SnakeGame snakeGame) {
+		return chooseAction(newPolicy(isModeTrain()), idxSnake, snakeGame);
+	}
 
-		// Initialize Q-values for unseen state
-		if (qValues == null) {
-			qValues = new double[nbActions];
-			for (int i = 0; i < nbActions; i++) qValues[i] = 0.0;
-			Q.put(state, qValues);
-		}
+	/**
+	 * Chooses an action for the snake using epsilon-greedy policy, with the exploration rate and the
+	 * random numbers of the policy
+	 */
+	@Override
+	public AgentAction chooseAction(Policy policy, int idxSnake, SnakeGame snakeGame) {
+		double[] qValues = lookup(encodeState(idxSnake, snakeGame));
 
-		Random rand = new Random();
+		Random rand = policy.getRandom();
 		// Exploration: random action with probability epsilon
-		if (rand.nextDouble() < epsilon) {
+		if (rand.nextDouble() < policy.getEpsilon(stateVisits(qValues))) {
 			int randomActionId = rand.nextInt(nbActions);
 			return AgentAction.values()[randomActionId];
 		} else {
-			// Exploitation: choose action with highest Q-value
+			// Exploitation: choose action with highest Q-value (plus the exploration bonus in training mode)
+			double bonus = policy.isModeTrain() ? explorationBonus : 0;
 			int BestActionId = 0;
-			for (int i = 1; i < nbActions; i++) {
-				if (qValues[i] > qValues[BestActionId]) BestActionId = i;
+			double best = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < nbActions; i++) {
+				double value = qValues[i];
+				if (bonus > 0) value += bonus / Math.sqrt(1 + qValues[nbActions + i]);
+				if (value > best) {
+					best = value;
+					BestActionId = i;
+				}
 			}
 			return AgentAction.values()[BestActionId];
 		}
@@ -160,25 +293,10 @@ public class TabularQLearning_solo extends Strategy {
 	 * @param isFinalState True if nextState is terminal
 	 */
 	@Override
-	public synchronized void update(int idxSnake, SnakeGame state, AgentAction action, SnakeGame nextState, int reward, boolean isFinalState) {
+	public void update(int idxSnake, SnakeGame state, AgentAction action, SnakeGame nextState, int reward, boolean isFinalState) {
 		String currentState = encodeState(idxSnake, state);
-		String nextStateStr = encodeState(idxSnake, nextState);
-
-		// Get or initialize Q-values for current state
-		double[] qValues = Q.get(currentState);
-		if (qValues == null) {
-			qValues = new double[nbActions];
-			for (int i = 0; i < nbActions; i++) qValues[i] = 0.0;
-			Q.put(currentState, qValues);
-		}
-
-		// Get or initialize Q-values for next state
-		double[] qValuesNext = Q.get(nextStateStr);
-		if (qValuesNext == null) {
-			qValuesNext = new double[nbActions];
-			for (int i = 0; i < nbActions; i++) qValuesNext[i] = 0.0;
-			Q.put(nextStateStr, qValuesNext);
-		}
+		double[] qValues = lookup(currentState);
+		double[] qValuesNext = lookup(encodeState(idxSnake, nextState));
 
 		int ActionId = action.ordinal();
 
@@ -191,7 +309,283 @@ public class TabularQLearning_solo extends Strategy {
 			}
 		}
 
-		// Q-learning update rule
-		qValues[ActionId] += alpha * (reward + gamma * maxQNext - qValues[ActionId]);
+		// Q-learning update rule, with the learning rate of the earlier visits of the pair
+		// (alphaSchedule=visits:inverse:1:0:1 gives 1/n, the running average of the targets)
+		double delta = getAlpha((long) qValues[nbActions + ActionId]) * (reward + gamma * maxQNext - qValues[ActionId]);
+		if (qValues == unseen) {
+			// Nothing to learn about an unseen state that stays at zero
+			if (delta == 0) return;
+			qValues = insert(currentState);
+		}
+		qValues[nbActions + ActionId]++;
+		qValues[2 * nbActions] = getSteps();
+		qValues[ActionId] += delta;
+	}
+
+
+	/**
+	 * Updates the Q-table with the eligibility traces of the game of the policy when lambda > 0
+	 * (Watkins's Q(lambda), see Strategy.setTraces), with the one-step rule otherwise
+	 */
+	@Override
+	public void update(Policy policy, int idxSnake, SnakeGame state, AgentAction action, SnakeGame nextState, int reward, boolean isFinalState) {
+		if (lambda <= 0) {
+			update(idxSnake, state, action, nextState, reward, isFinalState);
+			return;
+		}
+
+		String currentState = encodeState(idxSnake, state);
+		double[] qValues = lookup(currentState);
+		double[] qValuesNext = lookup(encodeState(idxSnake, nextState));
+
+		int ActionId = action.ordinal();
+		double maxQNext = isFinalState ? 0.0 : maxQ(qValuesNext);
+		double tdError = reward + gamma * maxQNext - qValues[ActionId];
+
+		Trace trace = policy.getState(Trace.class, () -> new Trace(traceLength));
+		// After an exploratory move the return no longer follows the greedy policy: the older pairs stop learning
+		if (qValues[ActionId] < maxQ(qValues)) {
+			trace.clear();
+		}
+		trace.visit(currentState, ActionId);
+
+		// The error of this step goes to every pair of the trace, (gamma * lambda)^age of it,
+		// newest first, until the share is negligible
+		double decay = gamma * lambda;
+		double eligibility = 1;
+		int newest = trace.size() - 1;
+		for (int k = newest; k >= 0 && (k == newest || (tdError != 0 && eligibility >= MIN_ELIGIBILITY)); k--, eligibility *= decay) {
+			String key = trace.key(k);
+			int a = trace.action(k);
+			double[] row = k == newest ? qValues : peek(key);
+
+			double delta = getAlpha((long) row[nbActions + a]) * tdError * eligibility;
+			if (row == unseen) {
+				if (delta == 0) continue;
+				row = insert(key);
+			}
+			if (k == newest) {
+				row[nbActions + a]++;
+			}
+			row[2 * nbActions] = getSteps();
+			row[a] += delta;
+		}
+
+		if (isFinalState) {
+			trace.clear();
+		}
+	}
+
+	private double maxQ(double[] qValues) {
+		double max = qValues[0];
+		for (int i = 1; i < nbActions; i++) {
+			if (qValues[i] > max) max = qValues[i];
+		}
+		return max;
+	}
+
+
+	// Q-values and visits of a state, the (read-only) unseen row if the state is not in the table
+	private double[] lookup(String state) {
+		double[] qValues = peek(state);
+		if (qValues == unseen) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return qValues;
+	}
+
+	// The same, left out of the hit rate (the states of a trace were looked up when they were visited)
+	private double[] peek(String state) {
+		double[] qValues = Q.get(state);
+		return qValues == null ? unseen : qValues;
+	}
+
+
+	// Adds a state to the table (all at 0, used at the current step), evicting other states if the table
+	// is over its capacity: the new state, about to be updated, would rank lowest in any order
+	private double[] insert(String state) {
+		double[] qValues = Q.computeIfAbsent(state, s -> {
+			double[] row = new double[2 * nbActions + 1];
+			row[2 * nbActions] = getSteps();
+			return row;
+		});
+		if (capacity > 0 && Q.size() > capacity) {
+			evict(state);
+		}
+		return qValues;
+	}
+
+	// Brings the table down to 90% of its capacity, removing the states that rank lowest in the eviction
+	// order. One thread evicts at a time while the others keep playing; the threshold comes from a sorted
+	// copy of the ranks, a cost spread over the tenth of the capacity inserted until the next eviction.
+	private void evict(String kept) {
+		if (!evicting.compareAndSet(false, true)) return;
+		try {
+			int excess = Q.size() - (int) (capacity * 0.9);
+			if (excess <= 0) return;
+
+			double[] ranks = new double[Q.size()];
+			int n = 0;
+			for (Map.Entry<String, double[]> entry : Q.entrySet()) {
+				if (n == ranks.length) break;
+				if (!entry.getKey().equals(kept)) ranks[n++] = rank(entry.getValue());
+			}
+			if (n == 0) return;
+			Arrays.sort(ranks, 0, n);
+			double threshold = ranks[Math.min(excess, n) - 1];
+
+			int removed = 0;
+			Iterator<Map.Entry<String, double[]>> rows = Q.entrySet().iterator();
+			while (rows.hasNext() && removed < excess) {
+				Map.Entry<String, double[]> entry = rows.next();
+				if (!entry.getKey().equals(kept) && rank(entry.getValue()) <= threshold) {
+					rows.remove();
+					removed++;
+				}
+			}
+			evictions.add(removed);
+		} finally {
+			evicting.set(false);
+		}
+	}
+
+	// States of lowest rank are evicted first
+	private double rank(double[] qValues) {
+		switch (eviction) {
+		case "count":
+			return stateVisits(qValues);
+		case "zero":
+			double max = 0;
+			for (int i = 0; i < nbActions; i++) max = Math.max(max, Math.abs(qValues[i]));
+			return max;
+		default:
+			return qValues[2 * nbActions];
+		}
+	}
+
+
+	// Updates of a state, all actions together
+	private long stateVisits(double[] qValues) {
+		double visits = 0;
+		for (int i = nbActions; i < 2 * nbActions; i++) visits += qValues[i];
+		return (long) visits;
+	}
+
+
+	// Pairs visited during the last steps of a game, oldest first, at most one entry per pair (replacing
+	// traces) and at most length entries; the eligibility of a pair follows from its age in the trace
+	static class Trace implements PolicyState {
+
+		private final String[] keys;
+		private final int[] actions;
+		private int start;
+		private int size;
+
+		Trace(int length) {
+			keys = new String[length];
+			actions = new int[length];
+		}
+
+		void visit(String key, int action) {
+			// A pair visited again moves to the end, with a full eligibility
+			for (int k = 0; k < size; k++) {
+				int i = (start + k) % keys.length;
+				if (actions[i] == action && keys[i].equals(key)) {
+					for (int m = k; m < size - 1; m++) {
+						int from = (start + m + 1) % keys.length;
+						int to = (start + m) % keys.length;
+						keys[to] = keys[from];
+						actions[to] = actions[from];
+					}
+					size--;
+					break;
+				}
+			}
+			if (size == keys.length) {
+				keys[start] = null;
+				start = (start + 1) % keys.length;
+				size--;
+			}
+			int end = (start + size) % keys.length;
+			keys[end] = key;
+			actions[end] = action;
+			size++;
+		}
+
+		void clear() {
+			Arrays.fill(keys, null);
+			start = 0;
+			size = 0;
+		}
+
+		int size() {
+			return size;
+		}
+
+		String key(int k) {
+			return keys[(start + k) % keys.length];
+		}
+
+		int action(int k) {
+			return actions[(start + k) % keys.length];
+		}
+	}
+
+
+	// Visits of the Q-table: number of states, states never updated (only reached as next states),
+	// states updated once, and visits of the most visited states
+	public static class TableStats {
+
+		private int states;
+		private int neverUpdated;
+		private int seenOnce;
+		private long visits;
+		private long[] hotVisits;
+		private long evictions;
+		private double hitRate;
+
+		public int getStates() {
+			return states;
+		}
+
+		public int getNeverUpdated() {
+			return neverUpdated;
+		}
+
+		public int getSeenOnce() {
+			return seenOnce;
+		}
+
+		public long getVisits() {
+			return visits;
+		}
+
+		/**
+		 * Visits of the most visited states, most visited first
+		 */
+		public long[] getHotVisits() {
+			return hotVisits;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		public double getHitRate() {
+			return hitRate;
+		}
+
+		@Override
+		public String toString() {
+			long hot = 0;
+			for(long v : hotVisits) {
+				hot += v;
+			}
+			return String.format("%d states, %d never updated, %d updated once, %d updates, top %d states %.1f%% of the updates %s, %d evicted, hit rate %.1f%%",
+					states, neverUpdated, seenOnce, visits, hotVisits.length, visits == 0 ? 0.0 : 100.0 * hot / visits, Arrays.toString(hotVisits),
+					evictions, 100 * hitRate);
+		}
 	}
 }
@@ -0,0 +1,250 @@
+package training;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import metrics.GameOutcome;
+import metrics.GameResultLog;
+import metrics.RollingStats;
+
+import model.InputMap;
+import model.SnakeGame;
+import replay.Replay;
+import strategy.Policy;
+import strategy.Strategy;
+
+
+// Plays batches of Snake games on a fixed pool of worker threads, without any view.
+// Unlike main_batchMode_solo.launchParallelGames, which starts one thread per game,
+// the number of games running at the same time is bounded by the pool size.
+public class GameRunner {
+
+	private ExecutorService executor;
+
+	// Optional log of every game outcome
+	private GameResultLog resultLog;
+
+	// Rolling statistics of the score of the first snake, in test and in train mode
+	private RollingStats testStats = new RollingStats(100, 0, 100, 100);
+	private RollingStats trainStats = new RollingStats(100, 0, 100, 100);
+
+	private AtomicLong nbGamesPlayed = new AtomicLong();
+
+	// Directory of the recorded replays (null = no recording), one game out of replayEvery is recorded
+	private String replayDir;
+	private int replayEvery = 1;
+
+	// Time budget of the agents deciding in parallel (negative = sequential decisions, see SnakeGame)
+	private long decisionTimeout = -1;
+
+
+	/**
+	 * Constructor
+	 * @param threads Number of games played at the same time
+	 */
+	public GameRunner(int threads) {
+
+		this.executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "snake-game-runner");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+
+	/**
+	 * Plays nbGames games and returns the average total score of each snake
+	 * @param nbGames Number of games to play
+	 * @param maxTurn Maximum turns per game
+	 * @param inputMap Map and initial positions
+	 * @param arrayStrats Strategy of each snake, shared by all the games
+	 * @param modeTrain True for training mode, false for test mode (for these games only, see Policy)
+	 * @param randomFirstApple Whether to place the first apple randomly
+	 * @param firstSeed Seed of the first game, game i uses firstSeed + i (negative = unseeded)
+	 */
+	public double[] runGames(int nbGames, int maxTurn, InputMap inputMap, Strategy[] arrayStrats, boolean modeTrain, boolean randomFirstApple, long firstSeed) {
+
+		try {
+			return submitGames(nbGames, maxTurn, inputMap, arrayStrats, modeTrain, randomFirstApple, firstSeed).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the games", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A game failed", e.getCause());
+		}
+	}
+
+
+	/**
+	 * Same as runGames, but returns at once: the future completes with the average total score of
+	 * each snake when the last game is over. Games submitted later by the caller are queued behind
+	 * these ones, so a batch of test games on a frozen copy of a strategy can run while the next
+	 * training batch is already being played.
+	 */
+	public CompletableFuture<double[]> submitGames(int nbGames, int maxTurn, InputMap inputMap, Strategy[] arrayStrats, boolean modeTrain, boolean randomFirstApple, long firstSeed) {
+
+		CompletableFuture<double[]> done = new CompletableFuture<double[]>();
+		double[] scoreStrats = new double[arrayStrats.length];
+		AtomicInteger remaining = new AtomicInteger(nbGames);
+
+		if(nbGames <= 0) {
+			done.complete(scoreStrats);
+			return done;
+		}
+
+		for(int i = 0; i < nbGames; i++) {
+
+			final long seed = firstSeed < 0 ? -1 : firstSeed + i;
+
+			executor.execute(() -> {
+				int[] scores;
+				try {
+					scores = playRecorded(maxTurn, inputMap, arrayStrats, modeTrain, randomFirstApple, seed);
+				} catch (Throwable e) {
+					done.completeExceptionally(e);
+					return;
+				}
+
+				synchronized(scoreStrats) {
+					for(int j = 0; j < arrayStrats.length; j++) {
+						scoreStrats[j] += scores[j];
+					}
+				}
+				if(remaining.decrementAndGet() == 0) {
+					for(int j = 0; j < arrayStrats.length; j++) {
+						scoreStrats[j] /= nbGames;
+					}
+					done.complete(scoreStrats);
+				}
+			});
+		}
+
+		return done;
+	}
+
+
+	// Plays one game of a batch, with its replay and its outcome recorded
+	private int[] playRecorded(int maxTurn, InputMap inputMap, Strategy[] arrayStrats, boolean modeTrain, boolean randomFirstApple, long seed) throws IOException {
+
+		long game = nbGamesPlayed.getAndIncrement();
+
+		Replay replay = null;
+		long gameSeed = seed;
+		if(replayDir != null && game % replayEvery == 0) {
+			// A replay needs a seeded game
+			if(gameSeed < 0) {
+				gameSeed = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+			}
+			replay = new Replay(inputMap, gameSeed, randomFirstApple, maxTurn, arrayStrats.length);
+		}
+
+		SnakeGame snakeGame = playGame(maxTurn, inputMap, Policy.of(arrayStrats, modeTrain), randomFirstApple, gameSeed, replay, decisionTimeout);
+		record(game, snakeGame, modeTrain);
+
+		if(replay != null) {
+			replay.write(new File(replayDir, "game_" + game + (modeTrain ? "_train" : "_test") + ".replay").getPath());
+		}
+		return snakeGame.getTabTotalScoreSnakes();
+	}
+
+
+	// Logs the outcome of every snake of a finished game and feeds the rolling statistics of the first one
+	private void record(long game, SnakeGame snakeGame, boolean modeTrain) {
+
+		if(resultLog != null) {
+			for(int j = 0; j < snakeGame.getSnakes().size(); j++) {
+				resultLog.log(GameOutcome.of(game, snakeGame, j, modeTrain));
+			}
+		}
+
+		(modeTrain ? trainStats : testStats).add(snakeGame.getTabTotalScoreSnakes()[0]);
+	}
+
+
+	/**
+	 * Plays a single game in the calling thread and returns it once over
+	 * @param seed Seed of the game (negative = unseeded)
+	 */
+	public static SnakeGame playGame(int maxTurn, InputMap inputMap, Strategy[] arrayStrats, boolean randomFirstApple, long seed) {
+		return playGame(maxTurn, inputMap, arrayStrats, randomFirstApple, seed, null, -1);
+	}
+
+	/**
+	 * Plays a single game in the calling thread, recording it in the replay if not null
+	 * @param decisionTimeout Time budget of the agents deciding in parallel (negative = sequential decisions)
+	 */
+	public static SnakeGame playGame(int maxTurn, InputMap inputMap, Strategy[] arrayStrats, boolean randomFirstApple, long seed, Replay replay, long decisionTimeout) {
+		return playGame(maxTurn, inputMap, Policy.of(arrayStrats), randomFirstApple, seed, replay, decisionTimeout);
+	}
+
+	/**
+	 * Plays a single game with the given policy handles, which must not be used by another game
+	 */
+	public static SnakeGame playGame(int maxTurn, InputMap inputMap, Policy[] policies, boolean randomFirstApple, long seed, Replay replay, long decisionTimeout) {
+
+		SnakeGame snakeGame = new SnakeGame(maxTurn, inputMap, randomFirstApple);
+		if(seed >= 0) {
+			snakeGame.setSeed(seed);
+		}
+		snakeGame.setReplay(replay);
+		snakeGame.setDecisionTimeout(decisionTimeout);
+		snakeGame.setPolicies(policies);
+		snakeGame.init();
+		snakeGame.setTime(0);
+		snakeGame.run();
+		return snakeGame;
+	}
+
+
+	/**
+	 * Records one game out of "every" in a replay file of the directory
+	 */
+	public void setReplayRecording(String replayDir, int every) {
+		new File(replayDir).mkdirs();
+		this.replayDir = replayDir;
+		this.replayEvery = every;
+	}
+
+	/**
+	 * Makes the agents of every game decide in parallel with the given time budget (see SnakeGame.setDecisionTimeout)
+	 */
+	public void setDecisionTimeout(long decisionTimeout) {
+		this.decisionTimeout = decisionTimeout;
+	}
+
+	public void setResultLog(GameResultLog resultLog) {
+		this.resultLog = resultLog;
+	}
+
+	/**
+	 * Sets the number of games over which the rolling statistics are computed
+	 */
+	public void setStatsWindow(int window) {
+		this.testStats = new RollingStats(window, 0, 100, 100);
+		this.trainStats = new RollingStats(window, 0, 100, 100);
+	}
+
+	public RollingStats getTestStats() {
+		return testStats;
+	}
+
+	public RollingStats getTrainStats() {
+		return trainStats;
+	}
+
+
+	/**
+	 * Stops the worker threads once the submitted games are over
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+}
@@ -0,0 +1,337 @@
+package training;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import model.InputMap;
+import strategy.Policy;
+import strategy.Strategy;
+import strategy.StrategyAdvanced;
+
+
+// Hyperparameter sweep over epsilon, gamma and alpha (and over strategies, to compare their learning curves).
+// Every trial trains its own strategy instance; trials and the games inside them are ForkJoin tasks,
+// so the pool keeps every core busy even when only a few long trials are left (idle workers steal games).
+// A trial is stopped early when its learning curve falls behind the median of the other trials,
+// or when its test score has not improved for a number of cycles.
+public class HyperparameterSweep {
+
+	// Swept parameters and their values (grid) or ranges (random search)
+	private LinkedHashMap<String, String> space = new LinkedHashMap<String, String>();
+
+	// Settings shared by all trials (TrainingConfig keys)
+	private Properties base = new Properties();
+
+	// "grid" or "random"
+	private String mode = "grid";
+	private int nbRandomTrials = 20;
+
+	// Cycles before the median rule may stop a trial
+	private int grace = 5;
+	// Cycles without improvement of the best test score before stopping (0 = never)
+	private int patience = 20;
+
+	private String output = "sweep_results.csv";
+
+	// Test scores of every trial, per cycle, for the median stopping rule
+	private final HashMap<Integer, ArrayList<Double>> curves = new HashMap<Integer, ArrayList<Double>>();
+
+
+	/**
+	 * Parses the arguments of the command line.
+	 * gamma, epsilon and alpha take a list of values (0.1,0.2,0.3) or, in random mode, a range (0.001:0.1,
+	 * sampled log-uniformly); strategy takes a list of strategies; the sweep keys are mode, trials, grace, patience and output;
+	 * every other key is passed to the TrainingConfig of each trial.
+	 */
+	public static HyperparameterSweep fromArgs(String[] args) {
+
+		HyperparameterSweep sweep = new HyperparameterSweep();
+
+		for(String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if(kv.length != 2) {
+				throw new IllegalArgumentException("Expected key=value, got " + arg);
+			}
+			switch(kv[0]) {
+			case "gamma":
+			case "epsilon":
+			case "alpha":
+				sweep.space.put(kv[0], kv[1]);
+				break;
+			case "strategy":
+				// A list of strategies compares their learning curves (approximate,approximateTarget,approximateDoubleQ)
+				if(kv[1].contains(",")) {
+					sweep.space.put(kv[0], kv[1]);
+				} else {
+					sweep.base.setProperty(kv[0], kv[1]);
+				}
+				break;
+			case "mode":
+				sweep.mode = kv[1];
+				break;
+			case "trials":
+				sweep.nbRandomTrials = Integer.parseInt(kv[1]);
+				break;
+			case "grace":
+				sweep.grace = Integer.parseInt(kv[1]);
+				break;
+			case "patience":
+				sweep.patience = Integer.parseInt(kv[1]);
+				break;
+			case "output":
+				sweep.output = kv[1];
+				break;
+			default:
+				sweep.base.setProperty(kv[0], kv[1]);
+				break;
+			}
+		}
+
+		return sweep;
+	}
+
+
+	/**
+	 * Runs every trial and writes the results table, best trials first
+	 */
+	public ArrayList<TrialResult> run() throws Exception {
+
+		TrainingConfig baseConfig = new TrainingConfig();
+		baseConfig.apply(base);
+
+		InputMap inputMap = new InputMap(baseConfig.getLayout());
+
+		ArrayList<Properties> trials = "random".equals(mode) ? randomTrials(baseConfig.getSeed()) : gridTrials();
+		System.out.println("Sweep : " + trials.size() + " trials on " + baseConfig.getThreads() + " threads");
+
+		ForkJoinPool pool = new ForkJoinPool(baseConfig.getThreads());
+
+		ArrayList<Trial> tasks = new ArrayList<Trial>();
+		for(int t = 0; t < trials.size(); t++) {
+			TrainingConfig config = new TrainingConfig();
+			config.apply(base);
+			config.apply(trials.get(t));
+			tasks.add(new Trial(t, config, inputMap));
+		}
+
+		for(Trial task : tasks) {
+			pool.execute(task);
+		}
+
+		ArrayList<TrialResult> results = new ArrayList<TrialResult>();
+		for(Trial task : tasks) {
+			results.add(task.join());
+		}
+		pool.shutdown();
+
+		Collections.sort(results, (a, b) -> Double.compare(b.bestTestScore, a.bestTestScore));
+		writeResults(results);
+
+		return results;
+	}
+
+
+	// Cartesian product of the listed values
+	private ArrayList<Properties> gridTrials() {
+
+		ArrayList<Properties> trials = new ArrayList<Properties>();
+		trials.add(new Properties());
+
+		for(Map.Entry<String, String> dim : space.entrySet()) {
+			ArrayList<Properties> next = new ArrayList<Properties>();
+			for(Properties trial : trials) {
+				for(String value : dim.getValue().split(",")) {
+					Properties p = new Properties();
+					p.putAll(trial);
+					p.setProperty(dim.getKey(), value.trim());
+					next.add(p);
+				}
+			}
+			trials = next;
+		}
+
+		return trials;
+	}
+
+
+	// Random search: ranges are sampled log-uniformly, lists uniformly
+	private ArrayList<Properties> randomTrials(long seed) {
+
+		Random rand = seed < 0 ? new Random() : new Random(seed);
+		ArrayList<Properties> trials = new ArrayList<Properties>();
+
+		for(int t = 0; t < nbRandomTrials; t++) {
+			Properties p = new Properties();
+			for(Map.Entry<String, String> dim : space.entrySet()) {
+				String spec = dim.getValue();
+				if(spec.contains(":")) {
+					String[] range = spec.split(":");
+					double logMin = Math.log(Double.parseDouble(range[0]));
+					double logMax = Math.log(Double.parseDouble(range[1]));
+					p.setProperty(dim.getKey(), Double.toString(Math.exp(logMin + rand.nextDouble() * (logMax - logMin))));
+				} else {
+					String[] values = spec.split(",");
+					p.setProperty(dim.getKey(), values[rand.nextInt(values.length)].trim());
+				}
+			}
+			trials.add(p);
+		}
+
+		return trials;
+	}
+
+
+	/**
+	 * Records the test score of a trial and tells whether it is below the median of the trials
+	 * that already reached the same cycle
+	 */
+	private boolean isBelowMedian(int cycle, double score) {
+
+		synchronized(curves) {
+			ArrayList<Double> scores = curves.computeIfAbsent(cycle, c -> new ArrayList<Double>());
+			scores.add(score);
+
+			if(cycle < grace || scores.size() < 3) {
+				return false;
+			}
+			ArrayList<Double> sorted = new ArrayList<Double>(scores);
+			Collections.sort(sorted);
+			return score < sorted.get(sorted.size() / 2);
+		}
+	}
+
+
+	private void writeResults(ArrayList<TrialResult> results) throws IOException {
+
+		PrintWriter writer = new PrintWriter(new FileWriter(output));
+		writer.println("trial,strategy,epsilon,gamma,alpha,cycles,best_test,final_test,stopped_early");
+		for(TrialResult r : results) {
+			writer.println(r.toCsv());
+			System.out.println(r.toCsv());
+		}
+		writer.close();
+		System.out.println("Results written in " + output);
+	}
+
+
+	// One trial: trains a fresh strategy cycle after cycle, the games of a cycle being forked subtasks
+	private class Trial extends RecursiveTask<TrialResult> {
+
+		private static final long serialVersionUID = 1L;
+
+		private int id;
+		private TrainingConfig config;
+		private InputMap inputMap;
+
+		Trial(int id, TrainingConfig config, InputMap inputMap) {
+			this.id = id;
+			this.config = config;
+			this.inputMap = inputMap;
+		}
+
+		@Override
+		protected TrialResult compute() {
+
+			Strategy[] arrayStrats = new Strategy[inputMap.getStart_snakes().size()];
+			arrayStrats[0] = config.createStrategy();
+			for(int j = 1; j < arrayStrats.length; j++) {
+				arrayStrats[j] = new StrategyAdvanced();
+			}
+
+			TrialResult result = new TrialResult(id, config);
+			long seed = config.getSeed() < 0 ? -1 : config.getSeed() + id * 1_000_000_000L;
+			int sinceImprovement = 0;
+
+			for(int cycle = 0; cycle < config.getCycles(); cycle++) {
+
+				playGames(arrayStrats, true, config.getNbTrainGames(), seed);
+				if(seed >= 0) seed += config.getNbTrainGames();
+
+				double testScore = playGames(arrayStrats, false, config.getNbTestGames(), seed);
+				if(seed >= 0) seed += config.getNbTestGames();
+
+				result.cycles = cycle + 1;
+				result.finalTestScore = testScore;
+				if(testScore > result.bestTestScore) {
+					result.bestTestScore = testScore;
+					sinceImprovement = 0;
+				} else {
+					sinceImprovement++;
+				}
+
+				if(isBelowMedian(cycle, result.bestTestScore) || (patience > 0 && sinceImprovement >= patience)) {
+					result.stoppedEarly = cycle + 1 < config.getCycles();
+					break;
+				}
+			}
+
+			return result;
+		}
+
+		// Forks one subtask per game, in training or test mode (for these games only, see Policy), and
+		// returns the average score of the trained snake
+		private double playGames(Strategy[] arrayStrats, boolean modeTrain, int nbGames, long firstSeed) {
+
+			ArrayList<RecursiveTask<int[]>> games = new ArrayList<RecursiveTask<int[]>>();
+			for(int i = 0; i < nbGames; i++) {
+				final long seed = firstSeed < 0 ? -1 : firstSeed + i;
+				games.add(new RecursiveTask<int[]>() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected int[] compute() {
+						return GameRunner.playGame(config.getMaxTurn(), inputMap, Policy.of(arrayStrats, modeTrain), config.isRandomFirstApple(), seed, null, config.getDecisionTimeout()).getTabTotalScoreSnakes();
+					}
+				});
+			}
+
+			double score = 0;
+			for(RecursiveTask<int[]> game : ForkJoinTask.invokeAll(games)) {
+				score += game.join()[0];
+			}
+			return score / nbGames;
+		}
+	}
+
+
+	// Outcome of a trial, one line of the results table
+	public static class TrialResult {
+
+		private int id;
+		private TrainingConfig config;
+		private int cycles;
+		private double bestTestScore = Double.NEGATIVE_INFINITY;
+		private double finalTestScore;
+		private boolean stoppedEarly;
+
+		TrialResult(int id, TrainingConfig config) {
+			this.id = id;
+			this.config = config;
+		}
+
+		public String toCsv() {
+			return id + "," + config.getStrategy() + "," + config.getEpsilon() + "," + config.getGamma() + "," + config.getAlpha()
+					+ "," + cycles + "," + bestTestScore + "," + finalTestScore + "," + stoppedEarly;
+		}
+
+		public TrainingConfig getConfig() {
+			return config;
+		}
+
+		public double getBestTestScore() {
+			return bestTestScore;
+		}
+	}
+
+}
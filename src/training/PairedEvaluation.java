@@ -0,0 +1,296 @@
+package training;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import model.InputMap;
+import strategy.Strategy;
+import strategy.StrategyAdvanced;
+
+
+// Evaluation on a fixed set of seeds (common random numbers): game i is always played with seed
+// firstSeed + i, so two strategies (or two checkpoints of the same one) meet exactly the same apples,
+// and the noise of the game cancels out in the per-seed difference of their scores.
+// Games are added by batches only until the answer is known: the confidence interval of the mean
+// difference excludes 0, or is narrower than the tolerance (no difference worth measuring), or maxGames is reached.
+// A comparison looks at its interval after every batch: the error level is split evenly over the largest
+// number of looks (Bonferroni), so that stopping at the first significant look keeps the false positives
+// under the level of z. Each look uses the wider interval of the adjusted level, reported with the result.
+// The evaluated strategy drives the first snake, the other snakes (if any) play StrategyAdvanced.
+// The random numbers of the strategies are seeded with the game (see Policy), except those of strategies
+// that draw them elsewhere (MCTS): such a strategy still adds its own noise.
+public class PairedEvaluation {
+
+	private InputMap inputMap;
+	private int maxTurn;
+	private boolean randomFirstApple;
+	private long firstSeed;
+
+	private int batch = 20;
+	private int minGames = 20;
+	private int maxGames = 1000;
+	// Half-width under which the difference is considered negligible (0 = keep playing until significant)
+	private double tolerance = 0;
+	// Quantile of the normal distribution of the confidence level (1.96 = 95%)
+	private double z = 1.96;
+
+	private ExecutorService executor;
+
+
+	/**
+	 * Constructor
+	 * @param firstSeed Seed of the first game of the set (must not be negative)
+	 * @param threads Number of games played at the same time
+	 */
+	public PairedEvaluation(InputMap inputMap, int maxTurn, boolean randomFirstApple, long firstSeed, int threads) {
+
+		if(firstSeed < 0) {
+			throw new IllegalArgumentException("A fixed seed set needs a seed");
+		}
+		this.inputMap = inputMap;
+		this.maxTurn = maxTurn;
+		this.randomFirstApple = randomFirstApple;
+		this.firstSeed = firstSeed;
+
+		this.executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "snake-evaluation");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+
+	/**
+	 * Compares two strategies on the same seeds; the result is the score of a minus the score of b
+	 */
+	public Result compare(Supplier<Strategy> a, Supplier<Strategy> b) {
+		return run(a, b);
+	}
+
+
+	/**
+	 * Average score of a strategy, with games added until the confidence interval is narrower than the tolerance
+	 */
+	public Result evaluate(Supplier<Strategy> a) {
+		return run(a, null);
+	}
+
+
+	private Result run(Supplier<Strategy> a, Supplier<Strategy> b) {
+
+		Result result = new Result();
+		result.paired = b != null;
+		// An evaluation only stops on the width of its interval, it makes no test
+		result.looks = b == null ? 1 : maxLooks();
+		result.level = 1 - (2 * (1 - normalCdf(z))) / result.looks;
+		double zLook = normalQuantile(1 - (1 - result.level) / 2);
+
+		while(result.games < maxGames) {
+
+			int nbGames = Math.min(batch, maxGames - result.games);
+			ArrayList<Future<int[]>> scoresA = playBatch(a, result.games, nbGames);
+			ArrayList<Future<int[]>> scoresB = b == null ? null : playBatch(b, result.games, nbGames);
+
+			for(int i = 0; i < nbGames; i++) {
+				double scoreA = get(scoresA.get(i))[0];
+				double scoreB = b == null ? 0 : get(scoresB.get(i))[0];
+				result.add(scoreA, scoreB);
+			}
+
+			if(result.games < minGames) {
+				continue;
+			}
+			double halfWidth = result.getHalfWidth(zLook);
+			// A zero width means identical results on every seed so far
+			if(halfWidth < tolerance || halfWidth == 0 || (b != null && Math.abs(result.getMean()) > halfWidth)) {
+				break;
+			}
+		}
+
+		result.halfWidth = result.getHalfWidth(zLook);
+		return result;
+	}
+
+
+	// Number of looks a comparison may take: one after each batch from minGames on
+	private int maxLooks() {
+
+		int looks = 0;
+		int games = 0;
+		while(games < maxGames) {
+			games += Math.min(batch, maxGames - games);
+			if(games >= minGames) {
+				looks++;
+			}
+		}
+		return Math.max(1, looks);
+	}
+
+
+	// Distribution function of the standard normal distribution (Abramowitz and Stegun 7.1.26, error < 1e-7)
+	static double normalCdf(double x) {
+
+		double t = 1 / (1 + 0.3275911 * Math.abs(x) / Math.sqrt(2));
+		double erfc = t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))))
+				* Math.exp(-x * x / 2);
+		return x >= 0 ? 1 - erfc / 2 : erfc / 2;
+	}
+
+	// Inverse of normalCdf, by bisection
+	static double normalQuantile(double p) {
+
+		double low = -10;
+		double high = 10;
+		for(int i = 0; i < 100; i++) {
+			double middle = (low + high) / 2;
+			if(normalCdf(middle) < p) {
+				low = middle;
+			} else {
+				high = middle;
+			}
+		}
+		return (low + high) / 2;
+	}
+
+
+	// Submits the games of seeds firstSeed + first to firstSeed + first + nbGames - 1
+	private ArrayList<Future<int[]>> playBatch(Supplier<Strategy> player, int first, int nbGames) {
+
+		ArrayList<Future<int[]>> scores = new ArrayList<Future<int[]>>();
+
+		for(int i = 0; i < nbGames; i++) {
+			long seed = firstSeed + first + i;
+			scores.add(executor.submit(() -> {
+				Strategy[] strats = new Strategy[inputMap.getStart_snakes().size()];
+				strats[0] = player.get();
+				for(int j = 1; j < strats.length; j++) {
+					strats[j] = new StrategyAdvanced();
+				}
+				return GameRunner.playGame(maxTurn, inputMap, strats, randomFirstApple, seed).getTabTotalScoreSnakes();
+			}));
+		}
+
+		return scores;
+	}
+
+
+	private static int[] get(Future<int[]> score) {
+		try {
+			return score.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the games", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("An evaluation game failed", e.getCause());
+		}
+	}
+
+
+	public void setBatch(int batch) {
+		this.batch = batch;
+	}
+
+	public void setMinGames(int minGames) {
+		this.minGames = minGames;
+	}
+
+	public void setMaxGames(int maxGames) {
+		this.maxGames = maxGames;
+	}
+
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Sets the confidence level from the quantile of the normal distribution (1.96 = 95%, 2.58 = 99%),
+	 * for the whole comparison: each look is made at a higher level
+	 */
+	public void setZ(double z) {
+		this.z = z;
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+
+	// Mean score of each side and mean paired difference (Welford's running variance)
+	public static class Result {
+
+		private boolean paired;
+		private int games;
+		private double meanA;
+		private double meanB;
+		private double mean;
+		private double m2;
+		private double halfWidth;
+		// Confidence level of each look, and largest number of looks it was adjusted for
+		private double level;
+		private int looks;
+
+		void add(double scoreA, double scoreB) {
+			games++;
+			meanA += (scoreA - meanA) / games;
+			meanB += (scoreB - meanB) / games;
+			double diff = scoreA - scoreB;
+			double delta = diff - mean;
+			mean += delta / games;
+			m2 += delta * (diff - mean);
+		}
+
+		double getHalfWidth(double z) {
+			if(games < 2) {
+				return Double.POSITIVE_INFINITY;
+			}
+			return z * Math.sqrt(m2 / (games - 1) / games);
+		}
+
+		public int getGames() {
+			return games;
+		}
+
+		/**
+		 * Mean paired difference (or mean score when a single strategy is evaluated)
+		 */
+		public double getMean() {
+			return mean;
+		}
+
+		public double getHalfWidth() {
+			return halfWidth;
+		}
+
+		/**
+		 * Confidence level of the interval, adjusted for the number of looks of a comparison
+		 */
+		public double getLevel() {
+			return level;
+		}
+
+		public int getLooks() {
+			return looks;
+		}
+
+		/**
+		 * True if the confidence interval of the difference excludes 0
+		 */
+		public boolean isSignificant() {
+			return Math.abs(mean) > halfWidth;
+		}
+
+		@Override
+		public String toString() {
+			if(!paired) {
+				return String.format("%.3f +/- %.3f (%d games, level %.2f%%)", mean, halfWidth, games, 100 * level);
+			}
+			return String.format("%.3f +/- %.3f (a = %.3f, b = %.3f, %d games, level %.2f%% per look over %d looks%s)", mean, halfWidth,
+					meanA, meanB, games, 100 * level, looks, isSignificant() ? ", significant" : "");
+		}
+	}
+
+}
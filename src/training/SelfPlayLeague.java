@@ -0,0 +1,273 @@
+package training;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.SerializationUtils;
+
+import model.InputMap;
+import model.SnakeGame;
+import strategy.Strategy;
+
+
+// Self-play training on multi-snake layouts: the learner plays against frozen copies of its own past
+// parameters. Every snapshotEvery cycles a copy of the learner joins the opponent pool (the oldest one
+// leaves when the pool is full); each game draws its opponents from the pool, the latest snapshot with
+// probability latestProb. Games are played on a fixed pool of worker threads and every finished game
+// updates the Elo ratings of the learner and of its opponents.
+public class SelfPlayLeague {
+
+	private static final double INITIAL_RATING = 1000;
+
+	// Settings of the learner and of the games (TrainingConfig keys)
+	private Properties base = new Properties();
+
+	private int poolSize = 10;
+	private int snapshotEvery = 5;
+	private double latestProb = 0.5;
+	private double eloK = 16;
+
+	private TrainingConfig config;
+
+	private Strategy learner;
+	private double learnerRating = INITIAL_RATING;
+
+	private final ArrayList<PoolEntry> pool = new ArrayList<PoolEntry>();
+
+	private Random rand;
+
+
+	/**
+	 * Parses the arguments of the command line.
+	 * The league keys are pool, snapshotEvery, latestProb and eloK; every other key goes to the
+	 * TrainingConfig of the learner (the layout defaults to a duel layout).
+	 */
+	public static SelfPlayLeague fromArgs(String[] args) {
+
+		SelfPlayLeague league = new SelfPlayLeague();
+		league.base.setProperty("layout", "layouts/duel/smallArenaNoWall.lay");
+
+		for(String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if(kv.length != 2) {
+				throw new IllegalArgumentException("Expected key=value, got " + arg);
+			}
+			switch(kv[0]) {
+			case "pool":
+				league.poolSize = Integer.parseInt(kv[1]);
+				break;
+			case "snapshotEvery":
+				league.snapshotEvery = Integer.parseInt(kv[1]);
+				break;
+			case "latestProb":
+				league.latestProb = Double.parseDouble(kv[1]);
+				break;
+			case "eloK":
+				league.eloK = Double.parseDouble(kv[1]);
+				break;
+			default:
+				league.base.setProperty(kv[0], kv[1]);
+				break;
+			}
+		}
+
+		league.config = new TrainingConfig();
+		league.config.apply(league.base);
+		return league;
+	}
+
+
+	/**
+	 * Trains the learner for the configured number of cycles of ntrain games
+	 */
+	public void run() throws Exception {
+
+		System.out.println("Config : " + config + " pool=" + poolSize + " snapshotEvery=" + snapshotEvery
+				+ " latestProb=" + latestProb + " eloK=" + eloK);
+
+		InputMap inputMap = new InputMap(config.getLayout());
+		int nbSnakes = inputMap.getStart_snakes().size();
+		if(nbSnakes < 2) {
+			throw new IllegalArgumentException("Self-play needs a layout with at least 2 snakes: " + config.getLayout());
+		}
+
+		rand = config.getSeed() < 0 ? new Random() : new Random(config.getSeed());
+
+		learner = config.createStrategy();
+		learner.setModeTrain(true);
+		addSnapshot(0);
+
+		if(!config.getCheckpointDir().isEmpty()) {
+			new File(config.getCheckpointDir()).mkdirs();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(config.getThreads(), r -> {
+			Thread thread = new Thread(r, "snake-self-play");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		long nbGamesPlayed = 0;
+
+		for(long cycle = 1; cycle <= config.getCycles(); cycle++) {
+
+			ArrayList<Future<?>> games = new ArrayList<Future<?>>();
+			int[] outcomes = new int[3];
+
+			for(int g = 0; g < config.getNbTrainGames(); g++) {
+
+				// The learner alternates between the slots so that no start position is favoured
+				int learnerSlot = (int) (nbGamesPlayed % nbSnakes);
+				Strategy[] strats = new Strategy[nbSnakes];
+				PoolEntry[] opponents = new PoolEntry[nbSnakes];
+				for(int s = 0; s < nbSnakes; s++) {
+					if(s == learnerSlot) {
+						strats[s] = learner;
+					} else {
+						opponents[s] = sampleOpponent();
+						strats[s] = opponents[s].strategy;
+					}
+				}
+
+				long seed = config.getSeed() < 0 ? -1 : config.getSeed() + nbGamesPlayed;
+				nbGamesPlayed++;
+
+				games.add(executor.submit(() -> {
+					SnakeGame snakeGame = GameRunner.playGame(config.getMaxTurn(), inputMap, strats, config.isRandomFirstApple(), seed, null, config.getDecisionTimeout());
+					recordGame(snakeGame.getTabTotalScoreSnakes(), learnerSlot, opponents, outcomes);
+				}));
+			}
+
+			for(Future<?> game : games) {
+				try {
+					game.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("A self-play game failed", e.getCause());
+				}
+			}
+
+			System.out.println("Cycle " + cycle + " - learner rating : " + String.format("%.1f", learnerRating)
+					+ " - wins/draws/losses : " + outcomes[0] + "/" + outcomes[1] + "/" + outcomes[2]
+					+ " - pool : " + poolDescription());
+
+			if(cycle % snapshotEvery == 0) {
+				addSnapshot(cycle);
+			}
+
+			if(!config.getCheckpointDir().isEmpty() && cycle % config.getCheckpointEvery() == 0) {
+				saveCheckpoint(new File(config.getCheckpointDir(), "learner_" + cycle + ".ser"));
+			}
+		}
+
+		if(!config.getCheckpointDir().isEmpty()) {
+			saveCheckpoint(new File(config.getCheckpointDir(), "learner_final.ser"));
+		}
+
+		executor.shutdown();
+	}
+
+
+	// Freezes a copy of the learner and adds it to the pool, with the current rating of the learner.
+	// Called between cycles, when no game is running.
+	private synchronized void addSnapshot(long cycle) {
+
+		Strategy frozen = SerializationUtils.clone(learner);
+		frozen.setModeTrain(false);
+
+		pool.add(new PoolEntry("cycle_" + cycle, frozen, learnerRating));
+		if(pool.size() > poolSize) {
+			pool.remove(0);
+		}
+	}
+
+
+	// Latest snapshot with probability latestProb, otherwise any snapshot of the pool
+	private synchronized PoolEntry sampleOpponent() {
+
+		if(rand.nextDouble() < latestProb) {
+			return pool.get(pool.size() - 1);
+		}
+		return pool.get(rand.nextInt(pool.size()));
+	}
+
+
+	/**
+	 * Updates the Elo ratings after a game: the learner meets each opponent, a higher total score wins
+	 */
+	private synchronized void recordGame(int[] scores, int learnerSlot, PoolEntry[] opponents, int[] outcomes) {
+
+		for(int s = 0; s < opponents.length; s++) {
+
+			PoolEntry opponent = opponents[s];
+			if(opponent == null) {
+				continue;
+			}
+
+			double result = Integer.compare(scores[learnerSlot], scores[s]) * 0.5 + 0.5;
+			outcomes[result == 1 ? 0 : (result == 0.5 ? 1 : 2)]++;
+
+			double expected = 1 / (1 + Math.pow(10, (opponent.rating - learnerRating) / 400));
+			double delta = eloK * (result - expected);
+
+			learnerRating += delta;
+			opponent.rating -= delta;
+			opponent.games++;
+		}
+	}
+
+
+	private synchronized String poolDescription() {
+
+		StringBuilder description = new StringBuilder();
+		for(PoolEntry entry : pool) {
+			if(description.length() > 0) {
+				description.append(", ");
+			}
+			description.append(entry.name).append("=").append(String.format("%.1f", entry.rating)).append(" (").append(entry.games).append(" games)");
+		}
+		return description.toString();
+	}
+
+
+	private void saveCheckpoint(File file) throws Exception {
+
+		OutputStream out = new FileOutputStream(file);
+		SerializationUtils.serialize(learner, out);
+		out.close();
+		System.out.println("Checkpoint saved in " + file);
+	}
+
+
+	public Strategy getLearner() {
+		return learner;
+	}
+
+	public double getLearnerRating() {
+		return learnerRating;
+	}
+
+
+	// Frozen opponent of the pool
+	private static class PoolEntry {
+
+		private String name;
+		private Strategy strategy;
+		private double rating;
+		private int games;
+
+		PoolEntry(String name, Strategy strategy, double rating) {
+			this.name = name;
+			this.strategy = strategy;
+			this.rating = rating;
+		}
+	}
+
+}
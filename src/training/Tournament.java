@@ -0,0 +1,413 @@
+package training;
+
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.SerializationUtils;
+
+import model.InputMap;
+import model.SnakeGame;
+import strategy.Strategy;
+import strategy.StrategyAdvanced;
+import strategy.StrategyDown;
+import strategy.StrategyMCTS;
+import strategy.StrategyPathfinding;
+import strategy.StrategyRandom;
+
+
+// Round-robin tournament between strategies on duel layouts.
+// A round plays every pair of players on every layout, once from each start position, all the games of
+// a round running in parallel. After each round the players are rated with a Bradley-Terry model
+// (on the Elo scale, a higher total score wins the game) and the ratings get bootstrap confidence
+// intervals; the tournament stops as soon as the intervals of players next to each other in the
+// ranking no longer overlap, or after maxRounds rounds.
+public class Tournament {
+
+	private static final double ELO_SCALE = 400 / Math.log(10);
+	private static final double ELO_MEAN = 1500;
+
+	// Players, by name, each one giving the strategy of a snake for a new game
+	private LinkedHashMap<String, Supplier<Strategy>> players = new LinkedHashMap<String, Supplier<Strategy>>();
+
+	private ArrayList<String> layouts = new ArrayList<String>();
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int maxTurn = 300;
+	private int minRounds = 3;
+	private int maxRounds = 50;
+	private int bootstrapSamples = 200;
+	private long seed = -1;
+	private String output = "";
+
+	// Result of every game played: first player, second player, points of the first player (1, 0.5 or 0)
+	private final ArrayList<double[]> games = new ArrayList<double[]>();
+
+
+	/**
+	 * Parses the arguments of the command line.
+	 * players=Advanced,Random,Pathfinding,MCTS,checkpoints/strategy_final.ser (names of the registered
+	 * strategies, or files of saved strategies), layouts=<comma list>, threads, maxTurn, minRounds,
+	 * maxRounds, bootstrap, seed, output (CSV of the final ranking)
+	 */
+	public static Tournament fromArgs(String[] args) throws Exception {
+
+		Tournament tournament = new Tournament();
+		String playerNames = "Advanced,Random,Pathfinding";
+		String layoutNames = "layouts/duel/smallArenaNoWall.lay,layouts/duel/arenaNoWall.lay";
+
+		for(String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if(kv.length != 2) {
+				throw new IllegalArgumentException("Expected key=value, got " + arg);
+			}
+			switch(kv[0]) {
+			case "players":
+				playerNames = kv[1];
+				break;
+			case "layouts":
+				layoutNames = kv[1];
+				break;
+			case "threads":
+				tournament.threads = Integer.parseInt(kv[1]);
+				break;
+			case "maxTurn":
+				tournament.maxTurn = Integer.parseInt(kv[1]);
+				break;
+			case "minRounds":
+				tournament.minRounds = Integer.parseInt(kv[1]);
+				break;
+			case "maxRounds":
+				tournament.maxRounds = Integer.parseInt(kv[1]);
+				break;
+			case "bootstrap":
+				tournament.bootstrapSamples = Integer.parseInt(kv[1]);
+				break;
+			case "seed":
+				tournament.seed = Long.parseLong(kv[1]);
+				break;
+			case "output":
+				tournament.output = kv[1];
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + kv[0]);
+			}
+		}
+
+		for(String name : playerNames.split(",")) {
+			tournament.addPlayer(name.trim(), playerSupplier(name.trim()));
+		}
+		for(String layout : layoutNames.split(",")) {
+			tournament.layouts.add(layout.trim());
+		}
+
+		return tournament;
+	}
+
+
+	/**
+	 * Strategies known by name; any other name is read as the file of a saved strategy,
+	 * which plays frozen (test mode) and is shared by all its games
+	 */
+	public static Supplier<Strategy> playerSupplier(String name) throws IOException {
+
+		switch(name) {
+		case "Random":
+			return () -> new StrategyRandom();
+		case "Down":
+			return () -> new StrategyDown();
+		case "Advanced":
+			return () -> new StrategyAdvanced();
+		case "Pathfinding":
+			return () -> new StrategyPathfinding();
+		case "MCTS":
+			return () -> new StrategyMCTS(20);
+		default:
+			InputStream in = new FileInputStream(name);
+			Strategy saved = SerializationUtils.deserialize(in);
+			in.close();
+			saved.setModeTrain(false);
+			return () -> saved;
+		}
+	}
+
+
+	public void addPlayer(String name, Supplier<Strategy> strategy) {
+		players.put(name, strategy);
+	}
+
+
+	/**
+	 * Plays rounds until the ranking is settled and returns the final ratings, best first
+	 */
+	public ArrayList<Rating> run() throws Exception {
+
+		ArrayList<String> names = new ArrayList<String>(players.keySet());
+		if(names.size() < 2) {
+			throw new IllegalArgumentException("A tournament needs at least 2 players");
+		}
+
+		ArrayList<InputMap> maps = new ArrayList<InputMap>();
+		for(String layout : layouts) {
+			InputMap inputMap = new InputMap(layout);
+			if(inputMap.getStart_snakes().size() != 2) {
+				throw new IllegalArgumentException("Not a duel layout: " + layout);
+			}
+			maps.add(inputMap);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "snake-tournament");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		System.out.println("Tournament : " + names + " on " + layouts);
+
+		ArrayList<Rating> ratings = null;
+		long nbGames = 0;
+
+		for(int round = 1; round <= maxRounds; round++) {
+
+			ArrayList<Future<double[]>> results = new ArrayList<Future<double[]>>();
+
+			for(int a = 0; a < names.size(); a++) {
+				for(int b = a + 1; b < names.size(); b++) {
+					for(InputMap inputMap : maps) {
+						// Both start positions, on the same seed
+						long gameSeed = seed < 0 ? -1 : seed + nbGames;
+						nbGames++;
+						results.add(executor.submit(playMatch(names, a, b, inputMap, gameSeed)));
+						results.add(executor.submit(playMatch(names, b, a, inputMap, gameSeed)));
+					}
+				}
+			}
+
+			for(Future<double[]> result : results) {
+				try {
+					games.add(result.get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("A tournament game failed", e.getCause());
+				}
+			}
+
+			ratings = rate(names);
+			boolean settled = isSettled(ratings);
+
+			System.out.println("Round " + round + " - " + games.size() + " games" + (settled ? " - ranking settled" : ""));
+			for(Rating rating : ratings) {
+				System.out.println("  " + rating);
+			}
+
+			if(settled && round >= minRounds) {
+				break;
+			}
+		}
+
+		executor.shutdown();
+
+		if(!output.isEmpty()) {
+			PrintWriter writer = new PrintWriter(new FileWriter(output));
+			writer.println("player,rating,low,high,games,points");
+			for(Rating rating : ratings) {
+				writer.println(rating.toCsv());
+			}
+			writer.close();
+			System.out.println("Ranking written in " + output);
+		}
+
+		return ratings;
+	}
+
+
+	// One game between two players, the first one on the first start position
+	private Callable<double[]> playMatch(ArrayList<String> names, int first, int second, InputMap inputMap, long gameSeed) {
+
+		Supplier<Strategy> firstPlayer = players.get(names.get(first));
+		Supplier<Strategy> secondPlayer = players.get(names.get(second));
+
+		return () -> {
+			Strategy[] strats = { firstPlayer.get(), secondPlayer.get() };
+			SnakeGame snakeGame = GameRunner.playGame(maxTurn, inputMap, strats, true, gameSeed);
+			int[] scores = snakeGame.getTabTotalScoreSnakes();
+			return new double[] { first, second, Integer.compare(scores[0], scores[1]) * 0.5 + 0.5 };
+		};
+	}
+
+
+	/**
+	 * Bradley-Terry ratings of all the games so far, with bootstrap confidence intervals (95%)
+	 */
+	private ArrayList<Rating> rate(ArrayList<String> names) {
+
+		int n = names.size();
+		double[] ratings = fit(games, n);
+
+		Random rand = seed < 0 ? new Random() : new Random(seed);
+		double[][] samples = new double[n][bootstrapSamples];
+		ArrayList<double[]> resampled = new ArrayList<double[]>(games.size());
+
+		for(int b = 0; b < bootstrapSamples; b++) {
+			resampled.clear();
+			for(int g = 0; g < games.size(); g++) {
+				resampled.add(games.get(rand.nextInt(games.size())));
+			}
+			double[] sample = fit(resampled, n);
+			for(int i = 0; i < n; i++) {
+				samples[i][b] = sample[i];
+			}
+		}
+
+		int[] nbPlayed = new int[n];
+		double[] points = new double[n];
+		for(double[] game : games) {
+			nbPlayed[(int) game[0]]++;
+			nbPlayed[(int) game[1]]++;
+			points[(int) game[0]] += game[2];
+			points[(int) game[1]] += 1 - game[2];
+		}
+
+		ArrayList<Rating> result = new ArrayList<Rating>();
+		for(int i = 0; i < n; i++) {
+			Arrays.sort(samples[i]);
+			double low = samples[i][(int) (0.025 * (bootstrapSamples - 1))];
+			double high = samples[i][(int) Math.ceil(0.975 * (bootstrapSamples - 1))];
+			result.add(new Rating(names.get(i), ratings[i], low, high, nbPlayed[i], points[i]));
+		}
+
+		Collections.sort(result, (x, y) -> Double.compare(y.rating, x.rating));
+		return result;
+	}
+
+
+	/**
+	 * Fits the Bradley-Terry strengths by minorization-maximization and returns them on the Elo scale.
+	 * Every pair gets one virtual draw, so that a player that won every game keeps a finite rating.
+	 */
+	static double[] fit(ArrayList<double[]> results, int n) {
+
+		double[][] wins = new double[n][n];
+		double[][] played = new double[n][n];
+
+		for(int i = 0; i < n; i++) {
+			for(int j = 0; j < n; j++) {
+				if(i != j) {
+					wins[i][j] = 0.5;
+					played[i][j] = 1;
+				}
+			}
+		}
+		for(double[] game : results) {
+			int i = (int) game[0];
+			int j = (int) game[1];
+			wins[i][j] += game[2];
+			wins[j][i] += 1 - game[2];
+			played[i][j]++;
+			played[j][i]++;
+		}
+
+		double[] strength = new double[n];
+		Arrays.fill(strength, 1);
+
+		for(int iteration = 0; iteration < 200; iteration++) {
+
+			double change = 0;
+			double logSum = 0;
+
+			for(int i = 0; i < n; i++) {
+				double totalWins = 0;
+				double denominator = 0;
+				for(int j = 0; j < n; j++) {
+					if(i != j) {
+						totalWins += wins[i][j];
+						denominator += played[i][j] / (strength[i] + strength[j]);
+					}
+				}
+				double updated = totalWins / denominator;
+				change = Math.max(change, Math.abs(Math.log(updated / strength[i])));
+				strength[i] = updated;
+				logSum += Math.log(updated);
+			}
+
+			// Geometric mean of 1: ratings centered on ELO_MEAN
+			double norm = Math.exp(logSum / n);
+			for(int i = 0; i < n; i++) {
+				strength[i] /= norm;
+			}
+
+			if(change < 1e-6) {
+				break;
+			}
+		}
+
+		double[] ratings = new double[n];
+		for(int i = 0; i < n; i++) {
+			ratings[i] = ELO_MEAN + ELO_SCALE * Math.log(strength[i]);
+		}
+		return ratings;
+	}
+
+
+	// Settled when the confidence intervals of consecutive players of the ranking are disjoint
+	private static boolean isSettled(ArrayList<Rating> ranking) {
+
+		for(int i = 0; i + 1 < ranking.size(); i++) {
+			if(ranking.get(i).low <= ranking.get(i + 1).high) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	// Rating of a player, with its confidence interval
+	public static class Rating {
+
+		private String name;
+		private double rating;
+		private double low;
+		private double high;
+		private int games;
+		private double points;
+
+		Rating(String name, double rating, double low, double high, int games, double points) {
+			this.name = name;
+			this.rating = rating;
+			this.low = low;
+			this.high = high;
+			this.games = games;
+			this.points = points;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public double getRating() {
+			return rating;
+		}
+
+		public String toCsv() {
+			return name + "," + rating + "," + low + "," + high + "," + games + "," + points;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-20s %7.1f  [%7.1f, %7.1f]  %d games  %.1f points", name, rating, low, high, games, points);
+		}
+	}
+
+}
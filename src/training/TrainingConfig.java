@@ -0,0 +1,458 @@
+package training;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.Random;
+
+import strategy.ApproximateQLearning_solo;
+import strategy.NeuralQLearning_solo;
+import strategy.Schedule;
+import strategy.Strategy;
+import strategy.TabularQLearning_solo;
+import utils.AgentAction;
+
+
+// Configuration of a headless training run.
+// Values come from key=value arguments, optionally on top of a properties file given by config=<file>;
+// arguments override the file. Every key has a default equal to the old main_batchMode_solo settings.
+public class TrainingConfig {
+
+	// Strategy to train: "tabular", "approximate", "approximateTarget" (bootstrap from a copy of the weights
+	// refreshed every targetUpdateEvery steps), "approximateDoubleQ" (double Q-learning on that copy)
+	// or "neural" (neural network Q-function)
+	private String strategy = "tabular";
+
+	// Q-learning parameters
+	private double gamma = 0.95;
+	private double epsilon = 0.3;
+	private double alpha = 0.01;
+
+	// Tabular states keyed by the window of this radius around the head instead of the whole grid (0)
+	private int viewRadius = 0;
+
+	// Hidden layers and training batch of the neural strategy
+	private String hidden = "64,64";
+	private int nnBatch = 32;
+
+	// Greedy decisions of the neural strategy evaluated together, by batches of at most inferenceBatch
+	// (0 = each game alone), a decision waiting at most inferenceLatency microseconds for its batch
+	private int inferenceBatch = 0;
+	private long inferenceLatency = 200;
+
+	// Training steps between two copies of the weights of approximateTarget and approximateDoubleQ
+	private int targetUpdateEvery = 1000;
+
+	// Eligibility traces of the learners: decay (0 = one-step Q-learning) and maximum length in steps
+	private double lambda = 0;
+	private int traceLength = 32;
+
+	// Schedules of epsilon and alpha (see strategy.Schedule), empty = the constant values above
+	private String epsilonSchedule = "";
+	private String alphaSchedule = "";
+
+	// Count-based exploration bonus of the tabular strategy (0 = none)
+	private double explorationBonus = 0;
+
+	// Maximum number of states of the tabular Q-table (0 = unbounded) and eviction order: lru, count or zero
+	private int qCapacity = 0;
+	private String qEviction = "lru";
+
+	private String layout = "layouts/alone/smallNoWall_alone.lay";
+	private boolean randomFirstApple = true;
+
+	// Number of games played at the same time
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	// Number of test + train cycles
+	private long cycles = 10000000;
+	private int nbTrainGames = 100;
+	private int nbTestGames = 100;
+	private int maxTurn = 300;
+
+	// Seed of the games; game n of the run uses seed + n. Negative means unseeded
+	private long seed = -1;
+
+	// Directory where the strategy is saved (empty = no checkpoint), every checkpointEvery cycles
+	private String checkpointDir = "";
+	private long checkpointEvery = 100;
+
+	// Checkpoint to start from instead of a fresh strategy (empty = fresh)
+	private String resume = "";
+
+	// CSV log of every game outcome (empty = no log), and number of games of the rolling statistics
+	private String resultLog = "";
+	private int statsWindow = 100;
+
+	// Directory where games are recorded as replays (empty = none), one game out of replayEvery
+	private String replayDir = "";
+	private int replayEvery = 100;
+
+	// Time budget of each agent when the agents of a game decide in parallel, in milliseconds
+	// (negative = agents decide one after the other, 0 = in parallel without limit)
+	private long decisionTimeout = -1;
+
+	// Paired comparison of each checkpoint with the previous one, on a fixed seed set starting at evalSeed,
+	// with at most evalGames games per comparison (0 = no comparison)
+	private int evalGames = 0;
+	private long evalSeed = 1_000_000_000L;
+
+	// Test games played on a frozen copy of the strategy while the training games go on
+	// (false = the test games of a cycle are over before its training games start)
+	private boolean asyncTest = true;
+
+
+	/**
+	 * Parses the arguments of the command line
+	 */
+	public static TrainingConfig fromArgs(String[] args) throws IOException {
+
+		Properties properties = new Properties();
+
+		for(String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if(kv.length != 2) {
+				throw new IllegalArgumentException("Expected key=value, got " + arg);
+			}
+			if(kv[0].equals("config")) {
+				InputStream in = new FileInputStream(kv[1]);
+				Properties fromFile = new Properties();
+				fromFile.load(in);
+				in.close();
+				for(String key : fromFile.stringPropertyNames()) {
+					properties.putIfAbsent(key, fromFile.getProperty(key));
+				}
+			} else {
+				properties.setProperty(kv[0], kv[1]);
+			}
+		}
+
+		TrainingConfig config = new TrainingConfig();
+		config.apply(properties);
+		return config;
+	}
+
+
+	/**
+	 * Sets the values found in the properties, the others keep their current value
+	 */
+	public void apply(Properties properties) {
+
+		for(String key : properties.stringPropertyNames()) {
+
+			String value = properties.getProperty(key).trim();
+
+			switch(key) {
+			case "strategy":
+				strategy = value;
+				break;
+			case "gamma":
+				gamma = Double.parseDouble(value);
+				break;
+			case "epsilon":
+				epsilon = Double.parseDouble(value);
+				break;
+			case "alpha":
+				alpha = Double.parseDouble(value);
+				break;
+			case "viewRadius":
+				viewRadius = Integer.parseInt(value);
+				break;
+			case "hidden":
+				hidden = value;
+				break;
+			case "nnBatch":
+				nnBatch = Integer.parseInt(value);
+				break;
+			case "inferenceBatch":
+				inferenceBatch = Integer.parseInt(value);
+				break;
+			case "inferenceLatency":
+				inferenceLatency = Long.parseLong(value);
+				break;
+			case "targetUpdateEvery":
+				targetUpdateEvery = Integer.parseInt(value);
+				break;
+			case "lambda":
+				lambda = Double.parseDouble(value);
+				break;
+			case "traceLength":
+				traceLength = Integer.parseInt(value);
+				break;
+			case "qCapacity":
+				qCapacity = Integer.parseInt(value);
+				break;
+			case "qEviction":
+				qEviction = value;
+				break;
+			case "explorationBonus":
+				explorationBonus = Double.parseDouble(value);
+				break;
+			case "epsilonSchedule":
+				Schedule.parse(value);
+				epsilonSchedule = value;
+				break;
+			case "alphaSchedule":
+				Schedule.parse(value);
+				alphaSchedule = value;
+				break;
+			case "layout":
+				layout = value;
+				break;
+			case "randomFirstApple":
+				randomFirstApple = Boolean.parseBoolean(value);
+				break;
+			case "threads":
+				threads = Integer.parseInt(value);
+				break;
+			case "cycles":
+				cycles = Long.parseLong(value);
+				break;
+			case "ntrain":
+				nbTrainGames = Integer.parseInt(value);
+				break;
+			case "ntest":
+				nbTestGames = Integer.parseInt(value);
+				break;
+			case "maxTurn":
+				maxTurn = Integer.parseInt(value);
+				break;
+			case "seed":
+				seed = Long.parseLong(value);
+				break;
+			case "checkpointDir":
+				checkpointDir = value;
+				break;
+			case "checkpointEvery":
+				checkpointEvery = Long.parseLong(value);
+				break;
+			case "resume":
+				resume = value;
+				break;
+			case "resultLog":
+				resultLog = value;
+				break;
+			case "statsWindow":
+				statsWindow = Integer.parseInt(value);
+				break;
+			case "replayDir":
+				replayDir = value;
+				break;
+			case "replayEvery":
+				replayEvery = Integer.parseInt(value);
+				break;
+			case "decisionTimeout":
+				decisionTimeout = Long.parseLong(value);
+				break;
+			case "evalGames":
+				evalGames = Integer.parseInt(value);
+				break;
+			case "evalSeed":
+				evalSeed = Long.parseLong(value);
+				break;
+			case "asyncTest":
+				asyncTest = Boolean.parseBoolean(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + key);
+			}
+		}
+	}
+
+
+	/**
+	 * Creates a fresh strategy with the configured parameters
+	 */
+	public Strategy createStrategy() {
+
+		Strategy created;
+		switch(strategy) {
+		case "tabular":
+			TabularQLearning_solo tabular = new TabularQLearning_solo(AgentAction.values().length, epsilon, gamma, alpha);
+			tabular.setExplorationBonus(explorationBonus);
+			tabular.setCapacity(qCapacity, qEviction);
+			tabular.setViewRadius(viewRadius);
+			created = tabular;
+			break;
+		case "approximate":
+			created = new ApproximateQLearning_solo(AgentAction.values().length, epsilon, gamma, alpha);
+			break;
+		case "approximateTarget":
+		case "approximateDoubleQ":
+			ApproximateQLearning_solo approximate = new ApproximateQLearning_solo(AgentAction.values().length, epsilon, gamma, alpha);
+			approximate.setTargetWeights(targetUpdateEvery, strategy.equals("approximateDoubleQ"));
+			created = approximate;
+			break;
+		case "neural":
+			String[] layers = hidden.split(",");
+			int[] hiddenSizes = new int[layers.length];
+			for(int l = 0; l < layers.length; l++) {
+				hiddenSizes[l] = Integer.parseInt(layers[l].trim());
+			}
+			NeuralQLearning_solo neural = new NeuralQLearning_solo(AgentAction.values().length, epsilon, gamma, alpha, hiddenSizes, nnBatch, seed < 0 ? new Random().nextLong() : seed);
+			neural.setInferenceServer(inferenceBatch, inferenceLatency);
+			created = neural;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown strategy " + strategy);
+		}
+
+		created.setTraces(lambda, traceLength);
+		if(!epsilonSchedule.isEmpty()) {
+			created.setEpsilonSchedule(Schedule.parse(epsilonSchedule));
+		}
+		if(!alphaSchedule.isEmpty()) {
+			created.setAlphaSchedule(Schedule.parse(alphaSchedule));
+		}
+		return created;
+	}
+
+
+	@Override
+	public String toString() {
+		return "strategy=" + strategy + " gamma=" + gamma + " epsilon=" + epsilon + " alpha=" + alpha
+				+ " epsilonSchedule=" + epsilonSchedule + " alphaSchedule=" + alphaSchedule + " explorationBonus=" + explorationBonus
+				+ " viewRadius=" + viewRadius + " hidden=" + hidden + " nnBatch=" + nnBatch + " inferenceBatch=" + inferenceBatch + " inferenceLatency=" + inferenceLatency + " targetUpdateEvery=" + targetUpdateEvery + " lambda=" + lambda + " traceLength=" + traceLength + " qCapacity=" + qCapacity + " qEviction=" + qEviction
+				+ " layout=" + layout + " randomFirstApple=" + randomFirstApple + " threads=" + threads
+				+ " cycles=" + cycles + " ntrain=" + nbTrainGames + " ntest=" + nbTestGames + " maxTurn=" + maxTurn
+				+ " seed=" + seed + " checkpointDir=" + checkpointDir + " checkpointEvery=" + checkpointEvery + " resume=" + resume
+				+ " resultLog=" + resultLog + " statsWindow=" + statsWindow + " replayDir=" + replayDir + " replayEvery=" + replayEvery
+				+ " decisionTimeout=" + decisionTimeout + " evalGames=" + evalGames + " evalSeed=" + evalSeed
+				+ " asyncTest=" + asyncTest;
+	}
+
+
+	public String getStrategy() {
+		return strategy;
+	}
+
+	public void setStrategy(String strategy) {
+		this.strategy = strategy;
+	}
+
+	public double getGamma() {
+		return gamma;
+	}
+
+	public void setGamma(double gamma) {
+		this.gamma = gamma;
+	}
+
+	public double getEpsilon() {
+		return epsilon;
+	}
+
+	public void setEpsilon(double epsilon) {
+		this.epsilon = epsilon;
+	}
+
+	public double getAlpha() {
+		return alpha;
+	}
+
+	public void setAlpha(double alpha) {
+		this.alpha = alpha;
+	}
+
+	public String getLayout() {
+		return layout;
+	}
+
+	public void setLayout(String layout) {
+		this.layout = layout;
+	}
+
+	public boolean isRandomFirstApple() {
+		return randomFirstApple;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public long getCycles() {
+		return cycles;
+	}
+
+	public void setCycles(long cycles) {
+		this.cycles = cycles;
+	}
+
+	public int getNbTrainGames() {
+		return nbTrainGames;
+	}
+
+	public int getNbTestGames() {
+		return nbTestGames;
+	}
+
+	public int getMaxTurn() {
+		return maxTurn;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public String getCheckpointDir() {
+		return checkpointDir;
+	}
+
+	public long getCheckpointEvery() {
+		return checkpointEvery;
+	}
+
+	public String getResume() {
+		return resume;
+	}
+
+	public String getResultLog() {
+		return resultLog;
+	}
+
+	public int getStatsWindow() {
+		return statsWindow;
+	}
+
+	public String getReplayDir() {
+		return replayDir;
+	}
+
+	public int getReplayEvery() {
+		return replayEvery;
+	}
+
+	public long getDecisionTimeout() {
+		return decisionTimeout;
+	}
+
+	public int getEvalGames() {
+		return evalGames;
+	}
+
+	public long getEvalSeed() {
+		return evalSeed;
+	}
+
+	public boolean isAsyncTest() {
+		return asyncTest;
+	}
+
+	public String getEpsilonSchedule() {
+		return epsilonSchedule;
+	}
+
+	public String getAlphaSchedule() {
+		return alphaSchedule;
+	}
+
+}
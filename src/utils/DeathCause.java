@@ -0,0 +1,5 @@
+package utils;
+
+public enum DeathCause {
+	ALIVE,WALL,SELF,OTHER_SNAKE
+}
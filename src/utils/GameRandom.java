@@ -0,0 +1,45 @@
+package utils;
+
+import java.util.Random;
+
+
+// Same generator as java.util.Random (same sequence for the same seed), but its state can be read
+// and written, so that a snapshot of a game also captures where its random sequence stands.
+// Not thread-safe: a game and its random generator are used by one thread at a time.
+public class GameRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	// No initializer: the constructor of Random calls setSeed before the fields of this class are initialized
+	private long state;
+
+
+	public GameRandom(long seed) {
+		super(seed);
+	}
+
+
+	@Override
+	public void setSeed(long seed) {
+		this.state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	@Override
+	protected int next(int bits) {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+
+	public long getState() {
+		return state;
+	}
+
+	public void setState(long state) {
+		this.state = state;
+	}
+
+}
@@ -0,0 +1,175 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+
+// Evaluates a network for many games at once: the games submit their inputs and wait on a future, a
+// background thread gathers the pending requests into a batch and evaluates it in one forward pass.
+// A batch leaves as soon as it is full, or when its oldest request has waited maxLatency; a maxBatch
+// close to the number of games deciding at the same time (the threads of the runner) rarely waits.
+// The thread stops after a moment without requests and starts again on the next one, so a server
+// dropped with its strategy (a snapshot, a checkpoint copy) does not keep a thread alive.
+public class InferenceServer {
+
+	// Idle time after which the thread stops
+	private static final long IDLE_MILLIS = 1000;
+
+	private final Mlp network;
+	private final int maxBatch;
+	private final long maxLatencyNanos;
+
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+
+
+	/**
+	 * Constructor
+	 * @param maxBatch Number of requests evaluated together at most
+	 * @param maxLatencyMicros Longest wait of a request for its batch to fill up
+	 */
+	public InferenceServer(Mlp network, int maxBatch, long maxLatencyMicros) {
+
+		if(maxBatch < 1) {
+			throw new IllegalArgumentException("The batch of an inference server must hold at least one request: " + maxBatch);
+		}
+		this.network = network;
+		this.maxBatch = maxBatch;
+		this.maxLatencyNanos = TimeUnit.MICROSECONDS.toNanos(maxLatencyMicros);
+	}
+
+
+	/**
+	 * Queues an input for the next batch
+	 * @param input getInputSize() values, not to be modified until the future completes
+	 * @param output Receives the getOutputSize() outputs of the network
+	 * @return Future completed with the output array
+	 */
+	public CompletableFuture<double[]> submit(double[] input, double[] output) {
+
+		Request request = new Request(input, output);
+		queue.add(request);
+		if(running.compareAndSet(false, true)) {
+			Thread thread = new Thread(this::serveLoop, "snake-inference");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return request.future;
+	}
+
+	/**
+	 * Submits the input and waits for its outputs
+	 */
+	public double[] evaluate(double[] input, double[] output) {
+		return submit(input, output).join();
+	}
+
+
+	private void serveLoop() {
+
+		Mlp.Workspace ws = network.newWorkspace(maxBatch);
+		ArrayList<Request> batch = new ArrayList<Request>(maxBatch);
+		int inputSize = network.getInputSize();
+		int outputSize = network.getOutputSize();
+
+		try {
+			while(true) {
+
+				Request first = queue.poll(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+				if(first == null) {
+					// Stops, unless a request came in between (then this thread or its submitter restarts)
+					running.set(false);
+					if(queue.isEmpty() || !running.compareAndSet(false, true)) {
+						return;
+					}
+					continue;
+				}
+
+				batch.add(first);
+				long deadline = first.submitted + maxLatencyNanos;
+				while(batch.size() < maxBatch) {
+					queue.drainTo(batch, maxBatch - batch.size());
+					long wait = deadline - System.nanoTime();
+					if(batch.size() == maxBatch || wait <= 0) {
+						break;
+					}
+					Request next = queue.poll(wait, TimeUnit.NANOSECONDS);
+					if(next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+
+				try {
+					double[] in = ws.getInput();
+					for(int b = 0; b < batch.size(); b++) {
+						System.arraycopy(batch.get(b).input, 0, in, b * inputSize, inputSize);
+					}
+					double[] out = network.forward(ws, in, batch.size());
+					for(int b = 0; b < batch.size(); b++) {
+						Request request = batch.get(b);
+						System.arraycopy(out, b * outputSize, request.output, 0, outputSize);
+						request.future.complete(request.output);
+					}
+				} catch (Throwable t) {
+					for(Request request : batch) {
+						request.future.completeExceptionally(t);
+					}
+				}
+
+				requests.add(batch.size());
+				batches.increment();
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			running.set(false);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	public long getBatches() {
+		return batches.sum();
+	}
+
+	/**
+	 * Mean number of requests per evaluated batch
+	 */
+	public double getMeanBatchSize() {
+		long n = batches.sum();
+		return n == 0 ? 0 : (double) requests.sum() / n;
+	}
+
+	@Override
+	public String toString() {
+		return "requests " + getRequests() + " - batches " + getBatches() + " - mean batch " + String.format("%.2f", getMeanBatchSize());
+	}
+
+
+	// Input of one decision, with the array and the future that receive its outputs
+	private static class Request {
+
+		private final double[] input;
+		private final double[] output;
+		private final long submitted = System.nanoTime();
+		private final CompletableFuture<double[]> future = new CompletableFuture<double[]>();
+
+		Request(double[] input, double[] output) {
+			this.input = input;
+			this.output = output;
+		}
+	}
+
+}
@@ -0,0 +1,298 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import agent.Snake;
+import item.Item;
+import model.SnakeGame;
+
+
+// Egocentric view of a game for the learners: the square window of cells centred on the head of a snake,
+// one channel per kind of content (walls, own body, other snakes, then one per ItemType), offsets taken
+// around the torus.
+// The view keeps its own copy of the board, synced with the state it is given: from one turn to the next
+// of the same play only the cells that changed are touched (the new head and the dropped tail of each
+// snake, the few items), in time independent of the length of the snakes. A state of the same game, with
+// the same history (SnakeGame.getHistoryId: no restoreState since) and the same turn or the next one,
+// can only differ by one move of each snake, which the head, neck and tail checks follow; any other
+// state (another game, a restored state, a jump of turns) rebuilds the snakes.
+// A window is then read from the copy without going through the game.
+// Not thread-safe: each thread uses its own (forThread), shared by the learners it runs.
+public class LocalView {
+
+	public static final int WALLS = 0;
+	public static final int OWN_BODY = 1;
+	public static final int OTHER_SNAKES = 2;
+	// Channel of the first item type, the others follow in the order of ItemType
+	public static final int FIRST_ITEM = 3;
+	public static final int CHANNELS = FIRST_ITEM + ItemType.values().length;
+
+	private static final ThreadLocal<LocalView> VIEWS = ThreadLocal.withInitial(LocalView::new);
+
+	// Game, history and turn of the state the copy is synced with (-1 = none)
+	private long gameId = -1;
+	private long historyId = -1;
+	private int turn;
+	private int sizeX;
+	private int sizeY;
+	private boolean[][] walls;
+
+	// Segments of each snake on each cell (index x * sizeY + y), and of all the snakes
+	private int[][] bodies = new int[0][];
+	private int[] allBodies;
+	// Cells of each snake, head first, in a ring: the head at start, size cells
+	private int[][] rings = new int[0][];
+	private int[] starts = new int[0];
+	private int[] lengths = new int[0];
+	// Head of each snake, kept after its death so that its last window can still be read
+	private int[] heads = new int[0];
+
+	// Item types on each cell, one bit per ItemType, and the cells holding an item
+	private int[] itemMasks;
+	private int[] itemCells = new int[16];
+	private int nbItemCells;
+
+
+	/**
+	 * View of the current thread
+	 */
+	public static LocalView forThread() {
+		return VIEWS.get();
+	}
+
+
+	/**
+	 * Brings the copy of the board up to the state
+	 */
+	public void sync(SnakeGame state) {
+
+		ArrayList<Snake> snakes = state.getSnakes();
+
+		if(state.getGameId() != gameId || state.getSizeX() != sizeX || state.getSizeY() != sizeY || snakes.size() != bodies.length) {
+			reset(state);
+		}
+		boolean followsOn = state.getHistoryId() == historyId && (state.getTurn() == turn || state.getTurn() == turn + 1);
+		historyId = state.getHistoryId();
+		turn = state.getTurn();
+
+		for(int s = 0; s < snakes.size(); s++) {
+			Snake snake = snakes.get(s);
+			if(!snake.getPositions().isEmpty()) {
+				heads[s] = cell(snake.getPositions().get(0));
+			}
+			if(snake.isDead()) {
+				clearSnake(s);
+			} else if(!followsOn || !followSnake(s, snake.getPositions())) {
+				clearSnake(s);
+				for(Position p : snake.getPositions()) {
+					addTail(s, cell(p));
+				}
+			}
+		}
+
+		for(int i = 0; i < nbItemCells; i++) {
+			itemMasks[itemCells[i]] = 0;
+		}
+		nbItemCells = 0;
+		for(Item item : state.getItems()) {
+			int cell = item.getX() * sizeY + item.getY();
+			if(itemMasks[cell] == 0) {
+				if(nbItemCells == itemCells.length) {
+					itemCells = Arrays.copyOf(itemCells, 2 * nbItemCells);
+				}
+				itemCells[nbItemCells++] = cell;
+			}
+			itemMasks[cell] |= 1 << item.getItemType().ordinal();
+		}
+	}
+
+	// New game: empty board of its size, its walls. The arrays are kept when the number of snakes and of
+	// cells match, only emptied
+	private void reset(SnakeGame state) {
+
+		int nbSnakes = state.getSnakes().size();
+		int nbCells = state.getSizeX() * state.getSizeY();
+
+		if(nbSnakes == bodies.length && allBodies != null && nbCells == allBodies.length) {
+			for(int s = 0; s < nbSnakes; s++) {
+				clearSnake(s);
+			}
+			for(int i = 0; i < nbItemCells; i++) {
+				itemMasks[itemCells[i]] = 0;
+			}
+		} else {
+			bodies = new int[nbSnakes][nbCells];
+			allBodies = new int[nbCells];
+			rings = new int[nbSnakes][8];
+			starts = new int[nbSnakes];
+			lengths = new int[nbSnakes];
+			heads = new int[nbSnakes];
+			itemMasks = new int[nbCells];
+		}
+		nbItemCells = 0;
+
+		gameId = state.getGameId();
+		historyId = -1;
+		sizeX = state.getSizeX();
+		sizeY = state.getSizeY();
+		walls = state.getWalls();
+	}
+
+	// Applies the move of the snake since the last sync, if it is at most one step; false otherwise
+	private boolean followSnake(int s, ArrayList<Position> positions) {
+
+		int n = positions.size();
+		if(lengths[s] == 0 || n == 0) {
+			return lengths[s] == n;
+		}
+
+		int head = cell(positions.get(0));
+		if(head != rings[s][starts[s]]) {
+			if(n < 2 || cell(positions.get(1)) != rings[s][starts[s]]) {
+				return false;
+			}
+			addHead(s, head);
+		}
+		while(lengths[s] > n) {
+			removeTail(s);
+		}
+
+		// Growing by more than one segment, or any other change, shows on the length or on the tail
+		return lengths[s] == n && tail(s) == cell(positions.get(n - 1));
+	}
+
+	private void addHead(int s, int cell) {
+		grow(s);
+		starts[s] = (starts[s] - 1 + rings[s].length) % rings[s].length;
+		rings[s][starts[s]] = cell;
+		lengths[s]++;
+		bodies[s][cell]++;
+		allBodies[cell]++;
+	}
+
+	private void addTail(int s, int cell) {
+		grow(s);
+		rings[s][(starts[s] + lengths[s]) % rings[s].length] = cell;
+		lengths[s]++;
+		bodies[s][cell]++;
+		allBodies[cell]++;
+	}
+
+	private void removeTail(int s) {
+		int cell = tail(s);
+		lengths[s]--;
+		bodies[s][cell]--;
+		allBodies[cell]--;
+	}
+
+	private int tail(int s) {
+		return rings[s][(starts[s] + lengths[s] - 1) % rings[s].length];
+	}
+
+	private void clearSnake(int s) {
+		while(lengths[s] > 0) {
+			removeTail(s);
+		}
+		starts[s] = 0;
+	}
+
+	// Room for one more cell in the ring of the snake
+	private void grow(int s) {
+		int[] ring = rings[s];
+		if(lengths[s] < ring.length) {
+			return;
+		}
+		int[] larger = new int[2 * ring.length];
+		for(int i = 0; i < lengths[s]; i++) {
+			larger[i] = ring[(starts[s] + i) % ring.length];
+		}
+		rings[s] = larger;
+		starts[s] = 0;
+	}
+
+	private int cell(Position p) {
+		return p.getX() * sizeY + p.getY();
+	}
+
+
+	/**
+	 * Size of the window of the given radius, all channels: CHANNELS * (2 * radius + 1)^2
+	 */
+	public static int size(int radius) {
+		int window = 2 * radius + 1;
+		return CHANNELS * window * window;
+	}
+
+	/**
+	 * Writes the window around the head of the snake (its last head once dead) into the buffer
+	 * (size(radius) values, 0 or 1), channel by channel, then by row (dx) and column (dy) from -radius to radius
+	 */
+	public void encode(int idxSnake, int radius, double[] buffer, int offset) {
+
+		int window = 2 * radius + 1;
+		int area = window * window;
+		int head = heads[idxSnake];
+		int headX = head / sizeY;
+		int headY = head % sizeY;
+
+		int i = offset;
+		for(int dx = -radius; dx <= radius; dx++) {
+			for(int dy = -radius; dy <= radius; dy++, i++) {
+				int x = Math.floorMod(headX + dx, sizeX);
+				int y = Math.floorMod(headY + dy, sizeY);
+				int cell = x * sizeY + y;
+				int own = bodies[idxSnake][cell];
+				buffer[i + WALLS * area] = walls[x][y] ? 1 : 0;
+				buffer[i + OWN_BODY * area] = own > 0 ? 1 : 0;
+				buffer[i + OTHER_SNAKES * area] = allBodies[cell] > own ? 1 : 0;
+				for(int k = 0; k < CHANNELS - FIRST_ITEM; k++) {
+					buffer[i + (FIRST_ITEM + k) * area] = (itemMasks[cell] >> k) & 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The window around the head of the snake as a String, one char per cell holding its channels
+	 * (bit c set for channel c), row by row: a compact key for a table
+	 */
+	public String key(int idxSnake, int radius) {
+
+		int window = 2 * radius + 1;
+		char[] chars = new char[window * window];
+		int head = heads[idxSnake];
+		int headX = head / sizeY;
+		int headY = head % sizeY;
+
+		int i = 0;
+		for(int dx = -radius; dx <= radius; dx++) {
+			for(int dy = -radius; dy <= radius; dy++) {
+				int x = Math.floorMod(headX + dx, sizeX);
+				int y = Math.floorMod(headY + dy, sizeY);
+				int cell = x * sizeY + y;
+				int own = bodies[idxSnake][cell];
+				int mask = (walls[x][y] ? 1 << WALLS : 0) | (own > 0 ? 1 << OWN_BODY : 0)
+						| (allBodies[cell] > own ? 1 << OTHER_SNAKES : 0) | itemMasks[cell] << FIRST_ITEM;
+				chars[i++] = (char) ('0' + mask);
+			}
+		}
+		return new String(chars);
+	}
+
+
+	/**
+	 * Number of segments of the snake on the cell
+	 */
+	public int getBody(int idxSnake, int x, int y) {
+		return bodies[idxSnake][x * sizeY + y];
+	}
+
+	/**
+	 * Item types on the cell, bit k set for the ItemType of ordinal k
+	 */
+	public int getItems(int x, int y) {
+		return itemMasks[x * sizeY + y];
+	}
+
+}
@@ -0,0 +1,275 @@
+package utils;
+
+import java.io.Serializable;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+
+// Multilayer perceptron over flat primitive arrays: dense layers, ReLU on the hidden layers, linear output.
+// The weights of layer l are one array, row-major (output x input). The network only holds the parameters;
+// activations and gradients live in a Workspace sized for a maximum batch, allocated once per caller, so
+// a forward or backward pass allocates no array. Large batches split their rows over the cores.
+// The parameters may be read by several threads while one of them applies gradients (Hogwild style).
+public class Mlp implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	// Multiply-adds of a layer above which the rows of the batch are computed in parallel
+	private static final int PARALLEL_WORK = 1 << 16;
+
+	private final int[] sizes;
+	private final double[][] weights;
+	private final double[][] biases;
+
+
+	/**
+	 * Constructor: He initialization of the weights, biases at 0
+	 * @param sizes Size of each layer, input first, output last
+	 */
+	public Mlp(long seed, int... sizes) {
+
+		if(sizes.length < 2) {
+			throw new IllegalArgumentException("A network needs an input and an output layer");
+		}
+		this.sizes = sizes.clone();
+		this.weights = new double[sizes.length - 1][];
+		this.biases = new double[sizes.length - 1][];
+
+		Random rand = new Random(seed);
+		for(int l = 0; l < weights.length; l++) {
+			weights[l] = new double[sizes[l + 1] * sizes[l]];
+			biases[l] = new double[sizes[l + 1]];
+			double scale = Math.sqrt(2.0 / sizes[l]);
+			for(int i = 0; i < weights[l].length; i++) {
+				weights[l][i] = rand.nextGaussian() * scale;
+			}
+		}
+	}
+
+
+	/**
+	 * Computes the outputs of a batch
+	 * @param input batch x inputSize values, row by row
+	 * @return The output activations of the workspace (batch x outputSize, row by row), valid until the next pass
+	 */
+	public double[] forward(Workspace ws, double[] input, int batch) {
+
+		System.arraycopy(input, 0, ws.activations[0], 0, batch * sizes[0]);
+
+		for(int l = 0; l < weights.length; l++) {
+			boolean relu = l < weights.length - 1;
+			int layer = l;
+			run(batch, sizes[l] * sizes[l + 1], b -> forwardRow(layer, ws.activations[layer], ws.activations[layer + 1], b, relu));
+		}
+		return ws.activations[weights.length];
+	}
+
+	private void forwardRow(int l, double[] in, double[] out, int b, boolean relu) {
+
+		int nIn = sizes[l];
+		int nOut = sizes[l + 1];
+		double[] w = weights[l];
+		int inOffset = b * nIn;
+
+		for(int o = 0; o < nOut; o++) {
+			double sum = biases[l][o];
+			int row = o * nIn;
+			for(int i = 0; i < nIn; i++) {
+				sum += w[row + i] * in[inOffset + i];
+			}
+			out[b * nOut + o] = relu && sum < 0 ? 0 : sum;
+		}
+	}
+
+
+	/**
+	 * Back-propagates the gradient of the loss with respect to the outputs of the last forward pass of the
+	 * workspace, and leaves the gradients of the parameters (summed over the batch) in the workspace
+	 * @param outputGradient batch x outputSize values, row by row
+	 */
+	public void backward(Workspace ws, double[] outputGradient, int batch) {
+
+		int last = weights.length;
+		System.arraycopy(outputGradient, 0, ws.deltas[last], 0, batch * sizes[last]);
+
+		for(int l = last - 1; l >= 0; l--) {
+
+			int layer = l;
+			// Gradients of the parameters: one output neuron per task, summed over the batch
+			run(sizes[l + 1], sizes[l] * batch, o -> parameterGradient(ws, layer, o, batch));
+
+			// Deltas of the layer below (through the ReLU), not needed for the input layer
+			if(l > 0) {
+				run(batch, sizes[l] * sizes[l + 1], b -> backwardRow(ws, layer, b));
+			}
+		}
+	}
+
+	private void parameterGradient(Workspace ws, int l, int o, int batch) {
+
+		int nIn = sizes[l];
+		int nOut = sizes[l + 1];
+		double[] in = ws.activations[l];
+		double[] delta = ws.deltas[l + 1];
+		double[] gw = ws.weightGradients[l];
+		int row = o * nIn;
+
+		double gb = 0;
+		for(int i = 0; i < nIn; i++) {
+			gw[row + i] = 0;
+		}
+		for(int b = 0; b < batch; b++) {
+			double d = delta[b * nOut + o];
+			if(d == 0) {
+				continue;
+			}
+			gb += d;
+			int inOffset = b * nIn;
+			for(int i = 0; i < nIn; i++) {
+				gw[row + i] += d * in[inOffset + i];
+			}
+		}
+		ws.biasGradients[l][o] = gb;
+	}
+
+	private void backwardRow(Workspace ws, int l, int b) {
+
+		int nIn = sizes[l];
+		int nOut = sizes[l + 1];
+		double[] w = weights[l];
+		double[] deltaOut = ws.deltas[l + 1];
+		double[] deltaIn = ws.deltas[l];
+		double[] act = ws.activations[l];
+
+		for(int i = 0; i < nIn; i++) {
+			deltaIn[b * nIn + i] = 0;
+		}
+		for(int o = 0; o < nOut; o++) {
+			double d = deltaOut[b * nOut + o];
+			if(d == 0) {
+				continue;
+			}
+			int row = o * nIn;
+			for(int i = 0; i < nIn; i++) {
+				deltaIn[b * nIn + i] += d * w[row + i];
+			}
+		}
+		// ReLU: no gradient through the units that were off
+		for(int i = 0; i < nIn; i++) {
+			if(act[b * nIn + i] <= 0) {
+				deltaIn[b * nIn + i] = 0;
+			}
+		}
+	}
+
+
+	/**
+	 * Gradient descent step with the gradients of the last backward pass of the workspace,
+	 * the step being scaled down if the norm of the gradient exceeds maxNorm (0 = no clipping)
+	 */
+	public void applyGradients(Workspace ws, double learningRate, double maxNorm) {
+
+		double scale = learningRate;
+		if(maxNorm > 0) {
+			double norm2 = 0;
+			for(int l = 0; l < weights.length; l++) {
+				for(double g : ws.weightGradients[l]) norm2 += g * g;
+				for(double g : ws.biasGradients[l]) norm2 += g * g;
+			}
+			double norm = Math.sqrt(norm2);
+			if(norm > maxNorm) {
+				scale *= maxNorm / norm;
+			}
+		}
+
+		for(int l = 0; l < weights.length; l++) {
+			double[] w = weights[l];
+			double[] gw = ws.weightGradients[l];
+			for(int i = 0; i < w.length; i++) {
+				w[i] -= scale * gw[i];
+			}
+			double[] bias = biases[l];
+			double[] gb = ws.biasGradients[l];
+			for(int i = 0; i < bias.length; i++) {
+				bias[i] -= scale * gb[i];
+			}
+		}
+	}
+
+
+	// Calls the task for 0 .. n-1, in parallel when each call does enough work
+	private static void run(int n, int workPerCall, IntConsumer task) {
+
+		if(n > 1 && (long) n * workPerCall >= PARALLEL_WORK) {
+			IntStream.range(0, n).parallel().forEach(task);
+		} else {
+			for(int i = 0; i < n; i++) {
+				task.accept(i);
+			}
+		}
+	}
+
+
+	public int getInputSize() {
+		return sizes[0];
+	}
+
+	public int getOutputSize() {
+		return sizes[sizes.length - 1];
+	}
+
+	/**
+	 * Preallocated buffers for batches of at most maxBatch rows
+	 */
+	public Workspace newWorkspace(int maxBatch) {
+		return new Workspace(sizes, maxBatch);
+	}
+
+
+	// Activations, deltas and parameter gradients of one caller; not thread-safe
+	public static class Workspace {
+
+		private final int maxBatch;
+		private final double[][] activations;
+		private final double[][] deltas;
+		private final double[][] weightGradients;
+		private final double[][] biasGradients;
+
+		private Workspace(int[] sizes, int maxBatch) {
+
+			this.maxBatch = maxBatch;
+			activations = new double[sizes.length][];
+			deltas = new double[sizes.length][];
+			for(int l = 0; l < sizes.length; l++) {
+				activations[l] = new double[maxBatch * sizes[l]];
+				deltas[l] = new double[maxBatch * sizes[l]];
+			}
+			weightGradients = new double[sizes.length - 1][];
+			biasGradients = new double[sizes.length - 1][];
+			for(int l = 0; l < sizes.length - 1; l++) {
+				weightGradients[l] = new double[sizes[l + 1] * sizes[l]];
+				biasGradients[l] = new double[sizes[l + 1]];
+			}
+		}
+
+		public int getMaxBatch() {
+			return maxBatch;
+		}
+
+		/**
+		 * Input layer of the workspace: encoding the inputs straight into it saves the copy in forward()
+		 */
+		public double[] getInput() {
+			return activations[0];
+		}
+
+		/**
+		 * Output layer of the workspace, where forward() leaves its results
+		 */
+		public double[] getOutput() {
+			return activations[activations.length - 1];
+		}
+	}
+
+}
@@ -4,6 +4,8 @@ import java.io.Serializable;
 
 public class Position implements Serializable{
 
+	private static final long serialVersionUID = 1L;
+
 	private int x;
 	private int y;
 
@@ -0,0 +1,213 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import agent.Snake;
+import model.SnakeGame;
+
+
+// Number of cells a snake can still reach after a move (flood fill over the wrapped board),
+// used to avoid moves that lead into a dead-end pocket.
+// The obstacles of a turn are marked once and reused for every action asked during that turn;
+// cells are marked with epoch stamps instead of clearing the arrays, so a count allocates nothing.
+// With tail retreat, a body segment counts as free once the flood reaches it later than the segment
+// leaves (segment i of a snake of size n is gone after n - i moves); otherwise only the tails are free.
+// Obstacles are marked again when the turn changes: call invalidate() after moving a game back
+// to another state of the same turn (restoreState). Not thread-safe: use one instance per thread.
+public class ReachableArea {
+
+	private boolean tailRetreat;
+
+	private int sizeX;
+	private int sizeY;
+
+	private boolean[] wall;
+	private boolean[][] wallSource;
+
+	// Stamp of the turn that marked the body segment on the cell, and moves before it leaves the cell
+	private int[] body;
+	private int[] freeAfter;
+	private int bodyStamp;
+
+	// Stamp of the count that visited the cell, and flood depth of the cell
+	private int[] visited;
+	private int[] depth;
+	private int visitStamp;
+	private int[] queue;
+
+	// Game and turn whose obstacles are marked
+	private SnakeGame markedGame;
+	private int markedTurn = -1;
+
+
+	public ReachableArea(boolean tailRetreat) {
+		this.tailRetreat = tailRetreat;
+	}
+
+
+	/**
+	 * Number of cells reachable by a snake after the given move, the cell of the move included
+	 * (0 if that cell is a wall or a body). The flood stops once limit cells are found, so asking for
+	 * "at least the size of the snake" stays cheap on large boards.
+	 */
+	public int count(SnakeGame snakeGame, int idxSnake, AgentAction action, int limit) {
+
+		Snake snake = snakeGame.getSnakes().get(idxSnake);
+		prepare(snakeGame);
+
+		int x = snake.getX();
+		int y = snake.getY();
+		switch(action) {
+		case MOVE_UP:
+			y = y > 0 ? y - 1 : sizeY - 1;
+			break;
+		case MOVE_DOWN:
+			y = (y + 1) % sizeY;
+			break;
+		case MOVE_LEFT:
+			x = x > 0 ? x - 1 : sizeX - 1;
+			break;
+		case MOVE_RIGHT:
+			x = (x + 1) % sizeX;
+			break;
+		default:
+			break;
+		}
+
+		return count(x * sizeY + y, limit);
+	}
+
+
+	/**
+	 * Forgets the marked obstacles, to be called when the game changed without its turn changing
+	 */
+	public void invalidate() {
+		markedGame = null;
+	}
+
+
+	// Flood fill from a cell reached after one move
+	private int count(int startCell, int limit) {
+
+		if(isBlocked(startCell, 1)) {
+			return 0;
+		}
+
+		if(visitStamp == Integer.MAX_VALUE) {
+			Arrays.fill(visited, 0);
+			visitStamp = 0;
+		}
+		visitStamp++;
+
+		int start = 0;
+		int end = 0;
+		visited[startCell] = visitStamp;
+		depth[startCell] = 1;
+		queue[end++] = startCell;
+
+		while(start < end && end < limit) {
+			int current = queue[start++];
+			int x = current / sizeY;
+			int y = current - x * sizeY;
+			int nextDepth = depth[current] + 1;
+
+			for(int k = 0; k < 4; k++) {
+				int next;
+				switch(k) {
+				case 0:
+					next = y > 0 ? current - 1 : current + sizeY - 1;
+					break;
+				case 1:
+					next = y < sizeY - 1 ? current + 1 : current - sizeY + 1;
+					break;
+				case 2:
+					next = x > 0 ? current - sizeY : current + (sizeX - 1) * sizeY;
+					break;
+				default:
+					next = x < sizeX - 1 ? current + sizeY : y;
+					break;
+				}
+				if(visited[next] != visitStamp && !isBlocked(next, nextDepth)) {
+					visited[next] = visitStamp;
+					depth[next] = nextDepth;
+					queue[end++] = next;
+				}
+			}
+		}
+
+		return Math.min(end, limit);
+	}
+
+
+	// True if the cell holds a wall, or a body segment still there when the flood arrives at that depth
+	private boolean isBlocked(int cell, int atDepth) {
+		if(wall[cell]) {
+			return true;
+		}
+		if(body[cell] != bodyStamp) {
+			return false;
+		}
+		return tailRetreat ? freeAfter[cell] > atDepth : freeAfter[cell] > 1;
+	}
+
+
+	// Marks the obstacles of the current turn, unless it is already done
+	private void prepare(SnakeGame snakeGame) {
+
+		if(wall == null || sizeX != snakeGame.getSizeX() || sizeY != snakeGame.getSizeY()) {
+			sizeX = snakeGame.getSizeX();
+			sizeY = snakeGame.getSizeY();
+			int nbCells = sizeX * sizeY;
+			wall = new boolean[nbCells];
+			wallSource = null;
+			body = new int[nbCells];
+			freeAfter = new int[nbCells];
+			visited = new int[nbCells];
+			depth = new int[nbCells];
+			queue = new int[nbCells];
+			bodyStamp = 0;
+			visitStamp = 0;
+			markedGame = null;
+		}
+
+		// Every game has its own walls array
+		boolean[][] walls = snakeGame.getWalls();
+		if(walls != wallSource) {
+			for(int x = 0; x < sizeX; x++) {
+				System.arraycopy(walls[x], 0, wall, x * sizeY, sizeY);
+			}
+			wallSource = walls;
+		}
+
+		if(snakeGame == markedGame && snakeGame.getTurn() == markedTurn) {
+			return;
+		}
+		markedGame = snakeGame;
+		markedTurn = snakeGame.getTurn();
+
+		if(bodyStamp == Integer.MAX_VALUE) {
+			Arrays.fill(body, 0);
+			bodyStamp = 0;
+		}
+		bodyStamp++;
+
+		ArrayList<Snake> snakes = snakeGame.getSnakes();
+		for(int s = 0; s < snakes.size(); s++) {
+			Snake snake = snakes.get(s);
+			if(snake.isDead()) {
+				continue;
+			}
+			ArrayList<Position> positions = snake.getPositions();
+			int size = positions.size();
+			// From the tail to the head, so that the head wins when segments overlap
+			for(int i = size - 1; i >= 0; i--) {
+				Position p = positions.get(i);
+				int cell = p.getX() * sizeY + p.getY();
+				body[cell] = bodyStamp;
+				freeAfter[cell] = size - i;
+			}
+		}
+	}
+
+}
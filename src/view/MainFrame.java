@@ -12,6 +12,8 @@ import java.awt.event.KeyListener;
 
 public class MainFrame extends JFrame implements KeyListener{
 
+    private static final long serialVersionUID = 1L;
+
     ControllerSnakeGame controller;
     
     public MainFrame(ControllerSnakeGame controller){
@@ -4,11 +4,20 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.GraphicsEnvironment;
 import java.awt.Point;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.util.ArrayList;
 import java.util.Observable;
 import java.util.Observer;
 
+import javax.swing.JButton;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 
 import agent.Snake;
@@ -16,6 +25,7 @@ import controller.ControllerSnakeGame;
 import item.Item;
 import model.SnakeGame;
 import model.Game;
+import replay.ReplayPlayer;
 import utils.AgentAction;
 import utils.ColorSnake;
 import utils.FeaturesItem;
@@ -74,6 +84,57 @@ public class ViewSnakeGame implements Observer{
 		jFrame.dispose();
 	}
 
+
+	/**
+	 * Replay mode: adds a slider to scrub through a recorded game and a button to play it
+	 */
+	public void enableReplay(ReplayPlayer player) {
+
+		JSlider slider = new JSlider(0, player.getReplay().getNbTurns(), 0);
+		JButton playButton = new JButton("Play");
+		JLabel turnLabel = new JLabel("Tour : 0", JLabel.CENTER);
+
+		Timer timer = new Timer(100, new ActionListener() {
+			public void actionPerformed(ActionEvent evenement) {
+				if(slider.getValue() < slider.getMaximum()) {
+					slider.setValue(slider.getValue() + 1);
+				} else {
+					((Timer) evenement.getSource()).stop();
+					playButton.setText("Play");
+				}
+			}
+		});
+
+		slider.addChangeListener(new ChangeListener() {
+			public void stateChanged(ChangeEvent evenement) {
+				update(player.seek(slider.getValue()), null);
+				turnLabel.setText("Tour : " + slider.getValue());
+			}
+		});
+
+		playButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent evenement) {
+				if(timer.isRunning()) {
+					timer.stop();
+					playButton.setText("Play");
+				} else {
+					timer.start();
+					playButton.setText("Pause");
+				}
+			}
+		});
+
+		JPanel replayPanel = new JPanel(new BorderLayout());
+		replayPanel.add(playButton, BorderLayout.WEST);
+		replayPanel.add(slider, BorderLayout.CENTER);
+		replayPanel.add(turnLabel, BorderLayout.EAST);
+
+		jFrame.add(replayPanel, BorderLayout.SOUTH);
+		jFrame.validate();
+
+		update(player.seek(0), null);
+	}
+
 	@Override
 	public void update(Observable o, Object arg) {
 